@@ -0,0 +1,28 @@
+import minesweeper.simulator.Simulator;
+import minesweeper.simulator.SolverStrategy;
+
+/**
+ * Main class for the simulator, which plays games without a user interface.
+ */
+public class SimulatorMain {
+
+    /**
+     * Runs a simulation with the solver strategy and prints the statistics.
+     * Arguments: width height bombs games [threads] [seed].
+     * @param args Arguments passed to the application.
+     */
+    public static void main(String[] args){
+        if(args.length < 4){
+            System.out.println("Usage: SimulatorMain width height bombs games [threads] [seed]");
+            return;
+        }
+        int width = Integer.parseInt(args[0]);
+        int height = Integer.parseInt(args[1]);
+        int bombs = Integer.parseInt(args[2]);
+        long games = Long.parseLong(args[3]);
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : System.nanoTime();
+        Simulator simulator = new Simulator(width, height, bombs, SolverStrategy::new, threads);
+        System.out.println(simulator.run(games, seed));
+    }
+}
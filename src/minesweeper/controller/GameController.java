@@ -1,19 +1,25 @@
 package minesweeper.controller;
 
-import javafx.scene.input.MouseButton;
-import javafx.scene.input.MouseEvent;
+import javafx.scene.control.ButtonType;
 import javafx.stage.Stage;
-import javafx.util.Pair;
 import minesweeper.logger.Logger;
+import minesweeper.model.BoardMetrics;
+import minesweeper.model.BoardPool;
+import minesweeper.model.EndlessModel;
 import minesweeper.model.GameState;
+import minesweeper.model.HistoryChange;
 import minesweeper.model.MarkChange;
 import minesweeper.model.Model;
 import minesweeper.model.ReverseChange;
-import minesweeper.view.Field;
+import minesweeper.solver.Hint;
+import minesweeper.solver.HintService;
+import minesweeper.solver.NoGuessGenerator;
+import minesweeper.view.CustomBoardDialog;
 import minesweeper.view.View;
 
 import java.util.Observable;
 import java.util.Observer;
+import java.util.Random;
 
 /**
  * The controller class responsible for the game window.
@@ -26,20 +32,37 @@ public class GameController {
     public GameController(Stage stage) {
         this.stage = stage;
         logger = new Logger("GameController");
+        boardPool = new BoardPool(BOARDS_PER_SIZE);
+        startRequestTime = System.nanoTime();
         startGame(Model.Difficulty.EASY, true);
     }
 
     /**
-     * Creates a model and a view for a level specified with
-     * a given difficulty. Both created objects are assigned
+     * Returns time which passed between the last request of a new game
+     * (a menu item or the reset button) and the new board being set up.
+     * @return Duration in nanoseconds.
+     */
+    public long getLastStartDuration(){
+        return lastStartDuration;
+    }
+
+    /**
+     * Creates a view for a given model. Both objects are assigned
      * to internal variables.
-     * @param difficulty Indicates difficulty of creating level.
+     * @param model Model of a starting game.
      */
-    private void createModelView(Model.Difficulty difficulty){
-        model = new Model(difficulty);
-        stage.setOnCloseRequest(event -> model.dispose());
+    private void createModelView(Model model){
+        this.model = model;
+        endlessModel = null;
+        stage.setOnCloseRequest(event -> {
+            model.dispose();
+            boardPool.dispose();
+            if(noGuessGenerator != null){
+                noGuessGenerator.dispose();
+            }
+        });
         try {
-            view = new View(stage, model.getHeight(), model.getWidth(), model.getBombIndicator());
+            view = new View(stage, model.getHeight(), model.getWidth(), model.getBombIndicator(), model::getVisibleValue);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -51,12 +74,23 @@ public class GameController {
      * @param center Specifies if the stage should be centered on the screen.
      */
     private void startGame(Model.Difficulty difficulty, boolean center){
+        startGame(boardPool.take(difficulty), center);
+    }
+
+    /**
+     * Starts new game.
+     * @param model Model of starting game.
+     * @param center Specifies if the stage should be centered on the screen.
+     */
+    private void startGame(Model model, boolean center){
         stage.toBack();
-        createModelView(difficulty);
+        createModelView(model);
         setup();
         stage.sizeToScene();
         if(center) stage.centerOnScreen();
         stage.toFront();
+        lastStartDuration = System.nanoTime() - startRequestTime;
+        logger.log("new game started in " + lastStartDuration/1000 + " us");
     }
 
     /**
@@ -64,18 +98,65 @@ public class GameController {
      * @param difficulty Difficulty of starting game.
      */
     private void startNewGame(Model.Difficulty difficulty){
+        startRequestTime = System.nanoTime();
         model.dispose();
         startGame(difficulty, true);
     }
 
+    /**
+     * Asks for custom board parameters and starts a new game
+     * on such a board.
+     */
+    private void startCustomGame(){
+        CustomBoardDialog dialog = new CustomBoardDialog(model.getWidth(), model.getHeight(), model.getBombs());
+        dialog.showAndWait().filter(button -> button == ButtonType.OK).ifPresent(button -> {
+            startRequestTime = System.nanoTime();
+            model.dispose();
+            startGame(boardPool.take(dialog.getBoardWidth(), dialog.getBoardHeight(), dialog.getBombs()), true);
+        });
+    }
+
+    /**
+     * Starts a game on a board without borders. The last finite game is
+     * kept disposed, so menu items can still read its parameters.
+     */
+    private void startEndlessGame(){
+        startRequestTime = System.nanoTime();
+        model.dispose();
+        stage.toBack();
+        endlessModel = new EndlessModel(new Random().nextLong());
+        try {
+            view = new View(stage, View.ENDLESS, View.ENDLESS, 0, endlessModel::getVisibleValue);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        setupMenus();
+        view.setEndlessMode();
+        view.setFieldClickListener(new FieldClickHandler());
+        view.addResetButtonHandler(event -> startEndlessGame());
+        hintService = null;
+        gameStarted = true;
+        stage.sizeToScene();
+        stage.centerOnScreen();
+        stage.toFront();
+        lastStartDuration = System.nanoTime() - startRequestTime;
+        logger.log("new endless game started in " + lastStartDuration/1000 + " us");
+    }
+
     /**
      * Launched when pressed reset button in the game.
      * Responsible for cleaning up all running threads
      * and starting a new game.
      */
     private void resetGame(){
+        startRequestTime = System.nanoTime();
         model.dispose();
-        startGame(model.getDifficulty(), false);
+        if(model.getDifficulty() == Model.Difficulty.CUSTOM){
+            startGame(boardPool.take(model.getWidth(), model.getHeight(), model.getBombs()), false);
+        }
+        else{
+            startGame(model.getDifficulty(), false);
+        }
     }
 
     /**
@@ -83,23 +164,153 @@ public class GameController {
      * starting a game.
      */
     private void setup(){
-        view.addButtonObserver(new ButtonObserver());
-        view.setEasyMenuItemHandler(event -> startNewGame(Model.Difficulty.EASY));
-        view.setMediumItemHandler(event -> startNewGame(Model.Difficulty.MEDIUM));
-        view.setHardItemHandler(event -> startNewGame(Model.Difficulty.HARD));
+        view.setFieldClickListener(new FieldClickHandler());
+        setupMenus();
+        view.setPracticeItemHandler(event -> setPracticeMode(!practiceMode));
+        view.setUndoItemHandler(event -> showHistoryChange(model.undo()));
+        view.setRedoItemHandler(event -> showHistoryChange(model.redo()));
+        setPracticeMode(practiceMode);
+        view.setNoGuessItemHandler(event -> setNoGuessMode(!noGuess));
+        setNoGuessMode(noGuess);
+        view.setHintButtonHandler(event -> showHint());
+        hintService = null;
         model.addTimerObserver(new TimerObserver());
         gameStarted = false;
         view.addResetButtonHandler(event -> resetGame());
     }
 
+    /**
+     * Setups handlers of menu items starting new games.
+     */
+    private void setupMenus(){
+        view.setEasyMenuItemHandler(event -> startNewGame(Model.Difficulty.EASY));
+        view.setMediumItemHandler(event -> startNewGame(Model.Difficulty.MEDIUM));
+        view.setHardItemHandler(event -> startNewGame(Model.Difficulty.HARD));
+        view.setCustomItemHandler(event -> startCustomGame());
+        view.setEndlessItemHandler(event -> startEndlessGame());
+    }
+
+    /**
+     * Turns practice mode on or off. In practice mode every action of the
+     * player can be undone and redone. The mode is kept for next games,
+     * but turning it off does not drop the history of the current game.
+     * @param practiceMode True to turn practice mode on.
+     */
+    private void setPracticeMode(boolean practiceMode){
+        this.practiceMode = practiceMode;
+        if(practiceMode){
+            model.enableJournal();
+        }
+        view.setPracticeMode(practiceMode);
+    }
+
+    /**
+     * Turns generating boards solvable without guessing on or off. The board
+     * is chosen at the first reverse, so the mode also changes the current
+     * game if it has not started yet. Boards too large or too dense to be
+     * searched keep the mode for next games, but are played as generated.
+     * @param noGuess True to generate boards solvable without guessing.
+     */
+    private void setNoGuessMode(boolean noGuess){
+        this.noGuess = noGuess;
+        boolean offered = NoGuessGenerator.isOffered(model.getWidth(), model.getHeight(), model.getBombs());
+        if(noGuess && offered && noGuessGenerator == null){
+            noGuessGenerator = new NoGuessGenerator();
+        }
+        model.setLayoutChooser(noGuess && offered ? noGuessGenerator : null);
+        view.setNoGuessMode(noGuess, offered);
+    }
+
+    /**
+     * Highlights the field which should be reversed next. The hint service
+     * is created by the first hint of a game and kept up to date afterwards.
+     */
+    private void showHint(){
+        if(hintService == null){
+            hintService = new HintService(model);
+        }
+        Hint hint = hintService.getHint();
+        if(hint != null){
+            logger.log("hint " + hint.getX() + ", " + hint.getY() + ", mine probability " + hint.getProbability());
+            view.showHint(hint.getX(), hint.getY(), hint.isSafe());
+        }
+    }
+
+    /**
+     * Updates the view after an undo or redo operation.
+     * @param historyChange Result of the operation.
+     */
+    private void showHistoryChange(HistoryChange historyChange){
+        if(!historyChange.isStateChanged()){
+            return;
+        }
+        // Undone fields cannot be forgotten by the solver, so it is created again when needed.
+        hintService = null;
+        view.clearHint();
+
+        view.apply(historyChange);
+        if(historyChange.getGameState() == GameState.SOLVED){
+            showVictory();
+        }
+        logger.log("journal uses " + model.getJournalMemoryUsage() + " bytes, opening index uses " +
+                model.getOpeningIndexMemoryUsage() + " bytes");
+    }
+
+    /**
+     * Logs metrics of a solved board and shows the efficiency of the player.
+     * Used both when the last field is reversed and when a win is redone.
+     */
+    private void showVictory(){
+        BoardMetrics metrics = model.getBoardMetrics();
+        logger.log("Solved, " + metrics);
+        view.showEfficiency(metrics.getThreeBV(), model.getThreeBVPerSecond());
+    }
+
+    /**
+     * Number of boards generated in advance for every board size.
+     */
+    private static final int BOARDS_PER_SIZE = 2;
+
+    /**
+     * Source of boards generated in advance.
+     */
+    private BoardPool boardPool;
+    /**
+     * Value of System.nanoTime() when the last new game was requested.
+     */
+    private long startRequestTime;
+    /**
+     * Duration of the last start of a game in nanoseconds.
+     */
+    private long lastStartDuration;
     /**
      * Model of the game.
      */
     private Model model;
+    /**
+     * Model of an endless game or null if the current game is played on a finite board.
+     */
+    private EndlessModel endlessModel;
     /**
      * View of the game.
      */
     private View view;
+    /**
+     * Source of hints for the current game or null if no hint was requested since the last undo or redo.
+     */
+    private HintService hintService;
+    /**
+     * True if boards solvable without guessing are generated.
+     */
+    private boolean noGuess;
+    /**
+     * Generator of boards solvable without guessing, created when the mode is turned on.
+     */
+    private NoGuessGenerator noGuessGenerator;
+    /**
+     * True if practice mode with undo and redo is on.
+     */
+    private boolean practiceMode;
     /**
      * Specifies if the game has already started.
      */
@@ -133,33 +344,38 @@ public class GameController {
     }
 
     /**
-     * The observer class added to the fields of the view.
+     * The listener of clicks on fields of the view.
      */
-    class ButtonObserver implements Observer{
+    class FieldClickHandler implements View.FieldClickListener{
         /**
-         * Does all needed updates after getting notification.
-         * @param o Observed object.
-         * @param arg Passed argument.
+         * Does all needed updates after a click on a field.
+         * @param x X-coordinate of the field.
+         * @param y Y-coordinate of the field.
+         * @param button Button the field was clicked with.
          */
         @Override
-        public void update(Observable o, Object arg) {
-            MouseEvent event = (MouseEvent)arg;
+        public void fieldClicked(int x, int y, int button) {
+            view.clearHint();
             if(!gameStarted){
                 model.start();
                 gameStarted = true;
             }
 
-            Field field = ((Field)event.getSource());
-            String fieldId = field.getId();
-            Pair<Integer, Integer> buttonPosition = parseId(fieldId);
-            int x = buttonPosition.getKey(), y = buttonPosition.getValue();
-
-            MouseButton mouseButton = event.getButton();
-            if(mouseButton == MouseButton.PRIMARY){
+            boolean bothButtons = button == View.FieldClickListener.BOTH;
+            if(button == View.FieldClickListener.MIDDLE || bothButtons){
+                logger.log("chord clicked");
+                chordReleasePending = bothButtons;
+                handleChord(x, y);
+            }
+            else if(chordReleasePending){
+                // Release of the second button of a chord.
+                chordReleasePending = false;
+            }
+            else if(button == View.FieldClickListener.PRIMARY){
                 logger.log("left button clicked");
                 handleLeftButton(x, y);
             }
-            else if(mouseButton == MouseButton.SECONDARY){
+            else if(button == View.FieldClickListener.SECONDARY){
                 logger.log("right button clicked");
                 handleRightButton(x, y);
             }
@@ -171,23 +387,35 @@ public class GameController {
          * @param y Y-coordinate of the pressed button.
          */
         private void handleLeftButton(int x, int y){
-            ReverseChange reverseChange = model.reverse(x, y);
+            showReverseChange(endlessModel != null ? endlessModel.reverse(x, y) : model.reverse(x, y));
+        }
 
+        /**
+         * Handles actions related to pressing the middle mouse button
+         * or both buttons at once. Endless games have no chords.
+         * @param x X-coordinate of the pressed button.
+         * @param y Y-coordinate of the pressed button.
+         */
+        private void handleChord(int x, int y){
+            if(endlessModel == null){
+                showReverseChange(model.chord(x, y));
+            }
+        }
+
+        /**
+         * Updates the view after a reverse operation.
+         * @param reverseChange Result of the operation.
+         */
+        private void showReverseChange(ReverseChange reverseChange){
+            if(hintService != null){
+                hintService.apply(reverseChange);
+            }
+            view.apply(reverseChange);
             if(reverseChange.gameStateChanged() && reverseChange.getGameState() == GameState.BOMB_DETONATED){
                 logger.log("Bomb detonated.");
-                view.showBombDetonated(x, y);
             }
-            else{
-                for(int i = 0; i < reverseChange.getPositions().size(); ++i){
-                    Pair<Integer, Integer> position = reverseChange.getPositions().get(i);
-                    int currX = position.getKey(), currY = position.getValue();
-                    int value = reverseChange.getValues().get(i);
-                    view.setFieldValue(currX, currY, value);
-                }
-
-                if(reverseChange.gameStateChanged() && reverseChange.getGameState() == GameState.SOLVED){
-                    view.victory();
-                }
+            else if(reverseChange.gameStateChanged() && reverseChange.getGameState() == GameState.SOLVED){
+                showVictory();
             }
         }
 
@@ -197,28 +425,20 @@ public class GameController {
          * @param y Y-coordinate of the pressed button.
          */
         private void handleRightButton(int x, int y){
-            MarkChange markChange = model.mark(x, y);
+            MarkChange markChange = endlessModel != null ? endlessModel.mark(x, y) : model.mark(x, y);
+            if(hintService != null){
+                hintService.apply(x, y, markChange);
+            }
             if(markChange.isStateChanged()){
                 logger.log("state changed");
-                if(markChange.getState() == MarkChange.State.MARKED){
-                    view.mark(x, y);
-                }
-                else{
-                    view.unmark(x, y);
-                }
-                view.setCounter(markChange.getBombCounter());
             }
+            view.apply(x, y, markChange);
         }
 
         /**
-         * Translates string in format 'x, y' to pair
-         * of integers.
-         * @param id String in format 'x. y'.
-         * @return Pair of parsed integers.
+         * True if a chord was made with both buttons and the release
+         * of the other button is still to come.
          */
-        private Pair<Integer, Integer> parseId(String id){
-            String[] parts = id.split(", ");
-            return new Pair<>(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
-        }
+        private boolean chordReleasePending;
     }
 }
@@ -0,0 +1,139 @@
+package minesweeper.model;
+
+/**
+ * Board of bombs stored as a bitmask, one bit per field.
+ * Every row takes a whole number of long words, bit x % 64 of word x / 64
+ * holds the field x. Operations work on 64 fields at once: numbers of
+ * adjacent bombs are computed by adding shifted rows with bit-sliced
+ * counters, so a row of counts is kept as four bit planes (ones, twos,
+ * fours and eights) instead of a value per field.
+ */
+class BitBoard {
+    /**
+     * Creates a board without bombs.
+     * @param width Width of a board.
+     * @param height Height of a board.
+     */
+    BitBoard(int width, int height){
+        this.width = width;
+        this.height = height;
+        words = (width + 63) >>> 6;
+        bombs = new long[words*height];
+    }
+
+    /**
+     * Puts a bomb in a field.
+     * @param x X-coordinate.
+     * @param y Y-coordinate.
+     */
+    void setBomb(int x, int y){
+        bombs[y*words + (x >>> 6)] |= 1L << x;
+    }
+
+    /**
+     * Counts adjacent bombs of all fields of a row. The eight neighbours of
+     * every field are the row above and below shifted left, not shifted and
+     * shifted right, and the row itself shifted left and right. They are
+     * added with a tree of full adders working on whole words.
+     * Bits of fields past the width are undefined.
+     * @param y Y-coordinate of the row.
+     * @param planes Receives four planes of words: bits 0, 1, 2 and 3 of the counts.
+     */
+    void countNeighbours(int y, long[] planes){
+        int up = (y - 1)*words, row = y*words, down = (y + 1)*words;
+        boolean hasUp = y > 0, hasDown = y < height - 1;
+        for(int i = 0; i < words; ++i){
+            long a = 0, b = 0, c = 0, f = 0, g = 0, h = 0;
+            if(hasUp){
+                b = bombs[up + i];
+                a = shiftedLeft(up, i);
+                c = shiftedRight(up, i);
+            }
+            long d = shiftedLeft(row, i), e = shiftedRight(row, i);
+            if(hasDown){
+                g = bombs[down + i];
+                f = shiftedLeft(down, i);
+                h = shiftedRight(down, i);
+            }
+
+            long abc = a ^ b ^ c, carryAbc = (a & b) | (c & (a ^ b));
+            long def = d ^ e ^ f, carryDef = (d & e) | (f & (d ^ e));
+            long gh = g ^ h, carryGh = g & h;
+            long ones = abc ^ def ^ gh, carryOnes = (abc & def) | (gh & (abc ^ def));
+            long twos = carryAbc ^ carryDef ^ carryGh;
+            long carryTwos = (carryAbc & carryDef) | (carryGh & (carryAbc ^ carryDef));
+            long carryLast = twos & carryOnes;
+            twos ^= carryOnes;
+            planes[i] = ones;
+            planes[words + i] = twos;
+            planes[2*words + i] = carryTwos ^ carryLast;
+            planes[3*words + i] = carryTwos & carryLast;
+        }
+    }
+
+    /**
+     * Writes numbers of adjacent bombs to a range of rows of a board.
+     * The board must hold zero values there.
+     * @param board Board to write to, of the size of this board.
+     * @param from First row to write.
+     * @param to Row after the last row to write.
+     */
+    void writeValues(Board board, int from, int to){
+        long[] planes = new long[4*words];
+        for(int y = from; y < to; ++y){
+            countNeighbours(y, planes);
+            int start = y*width;
+            for(int i = 0; i < words; ++i){
+                long ones = planes[i], twos = planes[words + i];
+                long fours = planes[2*words + i], eights = planes[3*words + i];
+                long nonZero = ones | twos | fours | eights;
+                int tail = Math.min(64, width - (i << 6));
+                if(tail < 64){
+                    nonZero &= (1L << tail) - 1;
+                }
+                while(nonZero != 0){
+                    int bit = Long.numberOfTrailingZeros(nonZero);
+                    nonZero &= nonZero - 1;
+                    int value = (int)((ones >>> bit) & 1) | (int)((twos >>> bit) & 1) << 1 |
+                            (int)((fours >>> bit) & 1) << 2 | (int)((eights >>> bit) & 1) << 3;
+                    board.setValue(start + (i << 6) + bit, value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a word of a row shifted so that every field gets the bit of its left neighbour.
+     * @param row Index of the first word of the row.
+     * @param i Index of the word within the row.
+     * @return Shifted word.
+     */
+    private long shiftedLeft(int row, int i){
+        long word = bombs[row + i] << 1;
+        return i > 0 ? word | (bombs[row + i - 1] >>> 63) : word;
+    }
+
+    /**
+     * Returns a word of a row shifted so that every field gets the bit of its right neighbour.
+     * @param row Index of the first word of the row.
+     * @param i Index of the word within the row.
+     * @return Shifted word.
+     */
+    private long shiftedRight(int row, int i){
+        long word = bombs[row + i] >>> 1;
+        return i < words - 1 ? word | (bombs[row + i + 1] << 63) : word;
+    }
+
+    /**
+     * Dimensions of a board.
+     */
+    private int width, height;
+    /**
+     * Number of long words of a row.
+     */
+    private int words;
+    /**
+     * Bits of fields containing a bomb.
+     */
+    private long[] bombs;
+}
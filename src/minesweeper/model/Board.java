@@ -0,0 +1,166 @@
+package minesweeper.model;
+
+import minesweeper.model.exceptions.WrongBoardParametersException;
+
+/**
+ * Board of fields packed into a flat byte array.
+ * Every field takes exactly one byte: bits 0-3 hold the number
+ * of adjacent bombs, bit 4 tells if the field contains a bomb
+ * and bits 5-6 hold the state of the field.
+ * Fields are indexed linearly with y*width + x.
+ */
+class Board {
+    /**
+     * Creates an empty board (no bombs, all fields unmarked).
+     * @param width Width of a board.
+     * @param height Height of a board.
+     */
+    Board(int width, int height){
+        if(width < 1 || height < 1 || (long)width*height > Integer.MAX_VALUE){
+            throw new WrongBoardParametersException("Cannot create a board with given parameters.");
+        }
+        this.width = width;
+        this.height = height;
+        this.fields = new byte[width*height];
+    }
+
+    /**
+     * Returns width of a board.
+     * @return Width of a board.
+     */
+    int getWidth(){
+        return width;
+    }
+
+    /**
+     * Returns height of a board.
+     * @return Height of a board.
+     */
+    int getHeight(){
+        return height;
+    }
+
+    /**
+     * Returns number of fields in a board.
+     * @return Number of fields.
+     */
+    int size(){
+        return fields.length;
+    }
+
+    /**
+     * Translates coordinates to a linear index.
+     * @param x X-coordinate.
+     * @param y Y-coordinate.
+     * @return Linear index of a field.
+     */
+    int index(int x, int y){
+        return y*width + x;
+    }
+
+    /**
+     * Returns the boolean indicating if a field contains a bomb.
+     * @param index Linear index of a field.
+     * @return True if the field contains a bomb.
+     */
+    boolean containsBomb(int index){
+        return (fields[index] & BOMB_BIT) != 0;
+    }
+
+    /**
+     * Returns the value of a field.
+     * @param index Linear index of a field.
+     * @return Number of bombs adjacent to the field.
+     */
+    int getValue(int index){
+        return fields[index] & VALUE_MASK;
+    }
+
+    /**
+     * Gets the current state of a field.
+     * @param index Linear index of a field.
+     * @return One of UNMARKED, MARKED, REVERSED, BOMB_DETONATED.
+     */
+    int getState(int index){
+        return (fields[index] & STATE_MASK) >>> STATE_SHIFT;
+    }
+
+    /**
+     * Puts a bomb in a field.
+     * @param index Linear index of a field.
+     */
+    void setBomb(int index){
+        fields[index] |= BOMB_BIT;
+    }
+
+    /**
+     * Removes a bomb from a field.
+     * @param index Linear index of a field.
+     */
+    void removeBomb(int index){
+        fields[index] &= ~BOMB_BIT;
+    }
+
+    /**
+     * Sets the value of a field.
+     * @param index Linear index of a field.
+     * @param value Number of bombs adjacent to the field (0-8).
+     */
+    void setValue(int index, int value){
+        fields[index] = (byte)((fields[index] & ~VALUE_MASK) | value);
+    }
+
+    /**
+     * Sets the state of a field.
+     * @param index Linear index of a field.
+     * @param state One of UNMARKED, MARKED, REVERSED, BOMB_DETONATED.
+     */
+    void setState(int index, int state){
+        fields[index] = (byte)((fields[index] & ~STATE_MASK) | (state << STATE_SHIFT));
+    }
+
+    /**
+     * Marks/Removes a mark with a flag in a field.
+     * @param index Linear index of a field.
+     * @return True if marking was successful.
+     */
+    boolean mark(int index){
+        int state = getState(index);
+        if(state == UNMARKED){
+            setState(index, MARKED);
+            return true;
+        }
+        else if(state == MARKED){
+            setState(index, UNMARKED);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reverses a field.
+     * @param index Linear index of a field.
+     */
+    void reverse(int index){
+        setState(index, containsBomb(index) ? BOMB_DETONATED : REVERSED);
+    }
+
+    /**
+     * Field states.
+     */
+    static final int UNMARKED = 0, MARKED = 1, REVERSED = 2, BOMB_DETONATED = 3;
+
+    /**
+     * Bit layout of a single field.
+     */
+    private static final int VALUE_MASK = 0x0F, BOMB_BIT = 0x10, STATE_SHIFT = 5, STATE_MASK = 0x60;
+
+    /**
+     * Packed fields.
+     */
+    private byte[] fields;
+    /**
+     * Dimensions of a board.
+     */
+    private int width, height;
+}
@@ -0,0 +1,442 @@
+package minesweeper.model;
+
+import minesweeper.model.exceptions.WrongBoardParametersException;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Places bombs on a board and computes values of its fields.
+ * A board is split into stripes of whole rows. The number of bombs in
+ * every stripe and their positions depend only on the seed and on the
+ * stripe, never on the order in which stripes are processed, so large
+ * boards are generated in parallel and small ones sequentially with
+ * exactly the same result for the same seed.
+ */
+class BoardGenerator {
+    /**
+     * Generates a board, in parallel on the common pool if it is large.
+     * @param width Width of a board.
+     * @param height Height of a board.
+     * @param bombs Bombs in a board.
+     * @param seed Seed of the board.
+     * @return Generated board.
+     */
+    static Board generate(int width, int height, int bombs, long seed){
+        return generate(new Board(width, height), bombs, seed);
+    }
+
+    /**
+     * Fills an empty board, in parallel on the common pool if it is large.
+     * States of fields are left untouched.
+     * @param board Empty board to fill.
+     * @param bombs Bombs in a board.
+     * @param seed Seed of the board.
+     * @return The filled board.
+     */
+    static Board generate(Board board, int bombs, long seed){
+        return generate(board, bombs, seed, board.size() >= PARALLEL_THRESHOLD ? ForkJoinPool.commonPool() : null);
+    }
+
+    /**
+     * Generates a board, counting adjacent bombs with the bit-parallel kernel
+     * if the board is wide enough to fill its words.
+     * @param board Empty board to fill.
+     * @param bombs Bombs in a board.
+     * @param seed Seed of the board.
+     * @param pool Pool to generate the board on or null to generate it on the calling thread.
+     * @return The filled board.
+     */
+    static Board generate(Board board, int bombs, long seed, ForkJoinPool pool){
+        return generate(board, bombs, seed, pool, board.getWidth() >= BIT_KERNEL_WIDTH);
+    }
+
+    /**
+     * Generates a board. Both ways of counting adjacent bombs give the same values.
+     * The bit-parallel kernel keeps a bitmask copy of bombs while they are placed
+     * and counts 64 fields at once, the other one adds every bomb to its neighbours.
+     * @param board Empty board to fill.
+     * @param bombs Bombs in a board.
+     * @param seed Seed of the board.
+     * @param pool Pool to generate the board on or null to generate it on the calling thread.
+     * @param bitKernel True to count adjacent bombs with BitBoard, false to count them field by field.
+     * @return The filled board.
+     */
+    static Board generate(Board board, int bombs, long seed, ForkJoinPool pool, boolean bitKernel){
+        if(bombs < 0 || bombs > board.size()){
+            throw new WrongBoardParametersException("Cannot create a board with given parameters.");
+        }
+
+        int stripeHeight = Math.max(1, STRIPE_SIZE / board.getWidth());
+        int stripes = (board.getHeight() + stripeHeight - 1) / stripeHeight;
+        BitBoard bitBoard = bitKernel ? new BitBoard(board.getWidth(), board.getHeight()) : null;
+        PlaceBombsTask placeBombs = new PlaceBombsTask(board, bitBoard, seed, stripeHeight, 0, stripes, bombs, pool != null);
+        CountTask count = new CountTask(board, bitBoard, stripeHeight, 0, stripes, pool != null);
+        if(pool != null){
+            pool.invoke(placeBombs);
+            pool.invoke(count);
+        }
+        else{
+            placeBombs.compute();
+            count.compute();
+        }
+        return board;
+    }
+
+    /**
+     * Moves bombs out of the neighbourhood of a field, so that the field can be
+     * safely reversed and opens an area. Every removed bomb is placed on a random
+     * empty field outside the neighbourhood. If the board is too full, only the
+     * field itself is cleared. Because the layout outside the neighbourhood was
+     * uniform, the result is uniform among layouts with the neighbourhood empty.
+     * @param board Generated board.
+     * @param bombs Bombs in a board.
+     * @param x X-coordinate of the field.
+     * @param y Y-coordinate of the field.
+     * @param seed Seed of the relocation.
+     */
+    static void clearArea(Board board, int bombs, int x, int y, long seed){
+        int width = board.getWidth(), height = board.getHeight();
+        int left = Math.max(x - 1, 0), right = Math.min(x + 1, width - 1);
+        int top = Math.max(y - 1, 0), bottom = Math.min(y + 1, height - 1);
+        if(bombs > board.size() - (right - left + 1)*(bottom - top + 1)){
+            left = right = x;
+            top = bottom = y;
+            if(bombs == board.size()){
+                return;
+            }
+        }
+
+        int removed = 0;
+        for(int i = top; i <= bottom; ++i){
+            for(int j = left; j <= right; ++j){
+                int position = i*width + j;
+                if(board.containsBomb(position)){
+                    board.removeBomb(position);
+                    addToNeighbours(board, position, -1);
+                    ++removed;
+                }
+            }
+        }
+        if(removed == 0){
+            return;
+        }
+
+        SplittableRandom random = new SplittableRandom(mix(seed ^ mix(board.index(x, y))));
+        int areaSize = (right - left + 1)*(bottom - top + 1);
+        int free = board.size() - areaSize - (bombs - removed);
+        if(16L*free >= board.size()){
+            while(removed > 0){
+                int position = random.nextInt(board.size());
+                int positionX = position % width, positionY = position / width;
+                boolean inArea = positionX >= left && positionX <= right && positionY >= top && positionY <= bottom;
+                if(!inArea && !board.containsBomb(position)){
+                    board.setBomb(position);
+                    addToNeighbours(board, position, 1);
+                    --removed;
+                }
+            }
+            return;
+        }
+
+        // Few empty fields left, so pick among them directly.
+        int[] candidates = new int[free];
+        int count = 0;
+        for(int position = 0; position < board.size(); ++position){
+            int positionX = position % width, positionY = position / width;
+            boolean inArea = positionX >= left && positionX <= right && positionY >= top && positionY <= bottom;
+            if(!inArea && !board.containsBomb(position)){
+                candidates[count++] = position;
+            }
+        }
+        for(int i = 0; i < removed; ++i){
+            int chosen = i + random.nextInt(count - i);
+            int position = candidates[chosen];
+            candidates[chosen] = candidates[i];
+            board.setBomb(position);
+            addToNeighbours(board, position, 1);
+        }
+    }
+
+    /**
+     * Adds a number to values of all fields adjacent to a field.
+     * @param board Board to update.
+     * @param position Linear position of the field.
+     * @param delta Number to add.
+     */
+    private static void addToNeighbours(Board board, int position, int delta){
+        int width = board.getWidth(), height = board.getHeight();
+        int x = position % width, y = position / width;
+        int left = Math.max(x - 1, 0), right = Math.min(x + 1, width - 1);
+        int top = Math.max(y - 1, 0), bottom = Math.min(y + 1, height - 1);
+        for(int i = top; i <= bottom; ++i){
+            for(int j = left; j <= right; ++j){
+                int neighbour = i*width + j;
+                if(neighbour != position){
+                    board.setValue(neighbour, board.getValue(neighbour) + delta);
+                }
+            }
+        }
+    }
+
+    /**
+     * Scrambles bits of a number (the SplitMix64 finalizer).
+     * @param z Number to scramble.
+     * @return Scrambled number.
+     */
+    private static long mix(long z){
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Minimal number of fields in a stripe.
+     */
+    private static final int STRIPE_SIZE = 1 << 16;
+    /**
+     * Boards at least this wide count adjacent bombs with the bit-parallel kernel.
+     */
+    private static final int BIT_KERNEL_WIDTH = 16;
+    /**
+     * Boards with at least this many fields are generated in parallel.
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 20;
+
+    /**
+     * Distributes bombs among a range of stripes and places them.
+     * The range is halved and the number of bombs in the first half is drawn
+     * from the hypergeometric distribution, so the final layout is uniform.
+     */
+    private static class PlaceBombsTask extends RecursiveAction {
+        /**
+         * Creates a task.
+         * @param board Board to fill.
+         * @param bitBoard Bitmask copy of bombs to fill as well or null.
+         * @param seed Seed of the board.
+         * @param stripeHeight Rows in a stripe.
+         * @param from First stripe of the range.
+         * @param to Stripe after the last stripe of the range.
+         * @param bombs Bombs to place in the range.
+         * @param fork True if halves should be forked.
+         */
+        PlaceBombsTask(Board board, BitBoard bitBoard, long seed, int stripeHeight, int from, int to, int bombs,
+                       boolean fork){
+            this.board = board;
+            this.bitBoard = bitBoard;
+            this.seed = seed;
+            this.stripeHeight = stripeHeight;
+            this.from = from;
+            this.to = to;
+            this.bombs = bombs;
+            this.fork = fork;
+        }
+
+        @Override
+        protected void compute(){
+            if(to - from == 1){
+                placeBombs();
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            long fields = getFirstField(to) - getFirstField(from);
+            long firstHalfFields = getFirstField(middle) - getFirstField(from);
+            SplittableRandom random = new SplittableRandom(mix(seed ^ mix(((long)from << 32) | to)));
+            int firstHalfBombs = 0;
+            if(2L*bombs <= fields){
+                for(int i = 0; i < bombs; ++i){
+                    if(random.nextLong(fields - i) < firstHalfFields - firstHalfBombs){
+                        ++firstHalfBombs;
+                    }
+                }
+            }
+            else{
+                // Draw the empty fields instead, there are fewer of them.
+                long empty = fields - bombs;
+                int firstHalfEmpty = 0;
+                for(long i = 0; i < empty; ++i){
+                    if(random.nextLong(fields - i) < firstHalfFields - firstHalfEmpty){
+                        ++firstHalfEmpty;
+                    }
+                }
+                firstHalfBombs = (int)(firstHalfFields - firstHalfEmpty);
+            }
+
+            PlaceBombsTask first = new PlaceBombsTask(board, bitBoard, seed, stripeHeight, from, middle,
+                    firstHalfBombs, fork);
+            PlaceBombsTask second = new PlaceBombsTask(board, bitBoard, seed, stripeHeight, middle, to,
+                    bombs - firstHalfBombs, fork);
+            if(fork){
+                invokeAll(first, second);
+            }
+            else{
+                first.compute();
+                second.compute();
+            }
+        }
+
+        /**
+         * Places bombs of a single stripe with Floyd's algorithm.
+         */
+        private void placeBombs(){
+            int start = getFirstField(from), size = getFirstField(to) - start;
+            SplittableRandom random = new SplittableRandom(mix(seed + from));
+            for(int j = size - bombs; j < size; ++j){
+                int position = start + random.nextInt(j + 1);
+                if(board.containsBomb(position)){
+                    position = start + j;
+                }
+                board.setBomb(position);
+                if(bitBoard != null){
+                    bitBoard.setBomb(position % board.getWidth(), position / board.getWidth());
+                }
+            }
+        }
+
+        /**
+         * Returns linear index of the first field of a stripe.
+         * @param stripe Index of a stripe.
+         * @return Index of its first field.
+         */
+        private int getFirstField(int stripe){
+            return Math.min(stripe*stripeHeight, board.getHeight())*board.getWidth();
+        }
+
+        /**
+         * Version of the serialized form, since every RecursiveAction is serializable.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Generated board.
+         */
+        private Board board;
+        /**
+         * Bitmask copy of bombs or null.
+         */
+        private BitBoard bitBoard;
+        /**
+         * Seed of the board.
+         */
+        private long seed;
+        /**
+         * Rows in a stripe.
+         */
+        private int stripeHeight;
+        /**
+         * Range of stripes.
+         */
+        private int from, to;
+        /**
+         * Bombs to place in the range.
+         */
+        private int bombs;
+        /**
+         * True if halves should be forked.
+         */
+        private boolean fork;
+    }
+
+    /**
+     * Computes values of fields in a range of stripes.
+     * Every bomb from the stripes and from the row directly above and below them
+     * increments its neighbours, but only those inside the stripes, so tasks
+     * never write to the same fields.
+     */
+    private static class CountTask extends RecursiveAction {
+        /**
+         * Creates a task.
+         * @param board Board with placed bombs.
+         * @param bitBoard Bitmask copy of bombs to count with or null to count field by field.
+         * @param stripeHeight Rows in a stripe.
+         * @param from First stripe of the range.
+         * @param to Stripe after the last stripe of the range.
+         * @param fork True if halves should be forked.
+         */
+        CountTask(Board board, BitBoard bitBoard, int stripeHeight, int from, int to, boolean fork){
+            this.board = board;
+            this.bitBoard = bitBoard;
+            this.stripeHeight = stripeHeight;
+            this.from = from;
+            this.to = to;
+            this.fork = fork;
+        }
+
+        @Override
+        protected void compute(){
+            if(to - from == 1){
+                if(bitBoard != null){
+                    int top = from*stripeHeight;
+                    bitBoard.writeValues(board, top, Math.min(top + stripeHeight, board.getHeight()));
+                }
+                else{
+                    count();
+                }
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            CountTask first = new CountTask(board, bitBoard, stripeHeight, from, middle, fork);
+            CountTask second = new CountTask(board, bitBoard, stripeHeight, middle, to, fork);
+            if(fork){
+                invokeAll(first, second);
+            }
+            else{
+                first.compute();
+                second.compute();
+            }
+        }
+
+        /**
+         * Computes values of fields in a single stripe.
+         */
+        private void count(){
+            int width = board.getWidth(), height = board.getHeight();
+            int top = from*stripeHeight, bottom = Math.min(top + stripeHeight, height) - 1;
+            for(int y = Math.max(top - 1, 0); y <= Math.min(bottom + 1, height - 1); ++y){
+                for(int x = 0; x < width; ++x){
+                    if(!board.containsBomb(y*width + x)){
+                        continue;
+                    }
+                    int left = Math.max(x - 1, 0), right = Math.min(x + 1, width - 1);
+                    for(int i = Math.max(y - 1, top); i <= Math.min(y + 1, bottom); ++i){
+                        for(int j = left; j <= right; ++j){
+                            if(i != y || j != x){
+                                int neighbour = i*width + j;
+                                board.setValue(neighbour, board.getValue(neighbour) + 1);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Version of the serialized form, since every RecursiveAction is serializable.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Board with placed bombs.
+         */
+        private Board board;
+        /**
+         * Bitmask copy of bombs or null.
+         */
+        private BitBoard bitBoard;
+        /**
+         * Rows in a stripe.
+         */
+        private int stripeHeight;
+        /**
+         * Range of stripes.
+         */
+        private int from, to;
+        /**
+         * True if halves should be forked.
+         */
+        private boolean fork;
+    }
+}
@@ -0,0 +1,343 @@
+package minesweeper.model;
+
+import java.util.Arrays;
+
+/**
+ * Difficulty metrics of a board: openings (connected regions of zero fields),
+ * isolated numbers (numbered fields not bordering any opening), islands
+ * (connected groups of isolated numbers) and 3BV, the minimal number of clicks
+ * solving the board, which is openings plus isolated numbers.
+ * All of them are computed in a single pass over rows of the board, keeping
+ * only three rows of bitmasks and runs of two rows, so the memory used is
+ * proportional to the width and not to the size of the board.
+ */
+public class BoardMetrics {
+    /**
+     * Creates metrics.
+     * @param openings Number of openings.
+     * @param isolatedNumbers Number of isolated numbers.
+     * @param islands Number of islands.
+     */
+    BoardMetrics(long openings, long isolatedNumbers, long islands){
+        this.openings = openings;
+        this.isolatedNumbers = isolatedNumbers;
+        this.islands = islands;
+    }
+
+    /**
+     * Computes metrics of a board. Rows are read once from top to bottom:
+     * zero fields of a row are stored as a bitmask together with the mask
+     * dilated by one field left and right, so numbered fields of a row are
+     * isolated if they are not covered by dilated masks of the row itself and
+     * of both adjacent rows. Connected regions are counted by
+     * ComponentCounter from runs of set bits of consecutive rows.
+     * @param board Board with bombs and values.
+     * @return Metrics of the board.
+     */
+    static BoardMetrics compute(Board board){
+        int width = board.getWidth(), height = board.getHeight();
+        int words = (width + 63) >>> 6;
+        long[] dilatedAbove = new long[words], dilated = new long[words], dilatedBelow = new long[words];
+        long[] numbers = new long[words], numbersBelow = new long[words];
+        long[] zeros = new long[words], isolated = new long[words];
+        ComponentCounter openings = new ComponentCounter(width), islands = new ComponentCounter(width);
+        long isolatedNumbers = 0;
+
+        for(int y = 0; y <= height; ++y){
+            if(y < height){
+                loadRow(board, y, zeros, numbersBelow);
+                openings.addRow(zeros, words);
+                dilate(zeros, dilatedBelow, words);
+            }
+            else{
+                Arrays.fill(dilatedBelow, 0);
+            }
+            if(y > 0){
+                for(int i = 0; i < words; ++i){
+                    isolated[i] = numbers[i] & ~(dilatedAbove[i] | dilated[i] | dilatedBelow[i]);
+                    isolatedNumbers += Long.bitCount(isolated[i]);
+                }
+                islands.addRow(isolated, words);
+            }
+
+            long[] swap = dilatedAbove;
+            dilatedAbove = dilated;
+            dilated = dilatedBelow;
+            dilatedBelow = swap;
+            swap = numbers;
+            numbers = numbersBelow;
+            numbersBelow = swap;
+        }
+        return new BoardMetrics(openings.getComponents(), isolatedNumbers, islands.getComponents());
+    }
+
+    /**
+     * Returns 3BV of a board, the minimal number of clicks needed to solve it.
+     * @return Number of openings plus number of isolated numbers.
+     */
+    public long getThreeBV(){
+        return openings + isolatedNumbers;
+    }
+
+    /**
+     * Returns number of openings, connected regions of zero fields.
+     * @return Number of openings.
+     */
+    public long getOpenings(){
+        return openings;
+    }
+
+    /**
+     * Returns number of numbered fields which do not border any opening,
+     * so every one of them has to be clicked separately.
+     * @return Number of isolated numbers.
+     */
+    public long getIsolatedNumbers(){
+        return isolatedNumbers;
+    }
+
+    /**
+     * Returns number of islands, connected groups of isolated numbers.
+     * @return Number of islands.
+     */
+    public long getIslands(){
+        return islands;
+    }
+
+    /**
+     * Returns efficiency of a player who solved a board.
+     * @param nanos Time the game took in nanoseconds.
+     * @return 3BV solved per second.
+     */
+    public double getThreeBVPerSecond(long nanos){
+        return nanos > 0 ? getThreeBV() / (nanos / 1e9) : 0;
+    }
+
+    @Override
+    public String toString(){
+        return "3BV " + getThreeBV() + ", openings " + openings + ", isolated numbers " + isolatedNumbers +
+                ", islands " + islands;
+    }
+
+    /**
+     * Reads a row of a board into bitmasks.
+     * @param board Board with bombs and values.
+     * @param y Y-coordinate of the row.
+     * @param zeros Receives bits of fields without a bomb and without adjacent bombs.
+     * @param numbers Receives bits of fields without a bomb and with adjacent bombs.
+     */
+    private static void loadRow(Board board, int y, long[] zeros, long[] numbers){
+        int width = board.getWidth(), start = y*width;
+        for(int i = 0, first = start; first < start + width; ++i, first += 64){
+            int last = Math.min(64, start + width - first);
+            long zeroWord = 0, numberWord = 0;
+            for(int bit = 0; bit < last; ++bit){
+                if(!board.containsBomb(first + bit)){
+                    if(board.getValue(first + bit) == 0){
+                        zeroWord |= 1L << bit;
+                    }
+                    else{
+                        numberWord |= 1L << bit;
+                    }
+                }
+            }
+            zeros[i] = zeroWord;
+            numbers[i] = numberWord;
+        }
+    }
+
+    /**
+     * Sets bits of a row next to its set bits.
+     * @param row Words of the row.
+     * @param dilated Receives words of the dilated row.
+     * @param words Number of words of a row.
+     */
+    private static void dilate(long[] row, long[] dilated, int words){
+        for(int i = 0; i < words; ++i){
+            long word = row[i] | (row[i] << 1) | (row[i] >>> 1);
+            if(i > 0){
+                word |= row[i - 1] >>> 63;
+            }
+            if(i < words - 1){
+                word |= row[i + 1] << 63;
+            }
+            dilated[i] = word;
+        }
+    }
+
+    /**
+     * Counts 8-connected regions of set bits fed row by row. Every row is
+     * split into runs of consecutive set bits, and runs touching runs of the
+     * previous row, diagonally included, are joined with union-find over runs
+     * of the two rows only. A new run adds a region and every join of two
+     * different regions removes one, so regions never have to be finished.
+     * Labels are compacted after every row, which keeps memory proportional
+     * to the width.
+     */
+    private static class ComponentCounter {
+        /**
+         * Creates a counter.
+         * @param width Width of rows.
+         */
+        ComponentCounter(int width){
+            int maxRuns = (width + 1)/2;
+            previousStarts = new int[maxRuns];
+            previousEnds = new int[maxRuns];
+            previousLabels = new int[maxRuns];
+            starts = new int[maxRuns];
+            ends = new int[maxRuns];
+            parents = new int[2*maxRuns];
+            compacted = new int[2*maxRuns];
+        }
+
+        /**
+         * Adds the next row.
+         * @param row Words of the row, bits past the width must be clear.
+         * @param words Number of words of a row.
+         */
+        void addRow(long[] row, int words){
+            int runs = 0;
+            for(int x = nextBit(row, words, 0, true); x >= 0; ){
+                int end = nextBit(row, words, x, false);
+                end = end < 0 ? words << 6 : end;
+                starts[runs] = x;
+                ends[runs++] = end - 1;
+                x = nextBit(row, words, end, true);
+            }
+
+            // Labels of the previous row are 0..previousRuns-1, runs of this row follow them.
+            int labels = previousLabelCount + runs;
+            for(int label = 0; label < labels; ++label){
+                parents[label] = label;
+            }
+            components += runs;
+            for(int run = 0, first = 0; run < runs; ++run){
+                while(first < previousRuns && previousEnds[first] < starts[run] - 1){
+                    ++first;
+                }
+                for(int other = first; other < previousRuns && previousStarts[other] <= ends[run] + 1; ++other){
+                    if(union(previousLabels[other], previousLabelCount + run)){
+                        --components;
+                    }
+                }
+            }
+
+            for(int label = 0; label < labels; ++label){
+                compacted[label] = -1;
+            }
+            int nextLabel = 0;
+            for(int run = 0; run < runs; ++run){
+                int root = find(previousLabelCount + run);
+                if(compacted[root] < 0){
+                    compacted[root] = nextLabel++;
+                }
+                previousStarts[run] = starts[run];
+                previousEnds[run] = ends[run];
+                previousLabels[run] = compacted[root];
+            }
+            previousRuns = runs;
+            previousLabelCount = nextLabel;
+        }
+
+        /**
+         * Returns number of regions in rows added so far.
+         * @return Number of regions.
+         */
+        long getComponents(){
+            return components;
+        }
+
+        /**
+         * Joins two labels.
+         * @param a A label.
+         * @param b Another label.
+         * @return True if the labels belonged to different regions.
+         */
+        private boolean union(int a, int b){
+            int rootA = find(a), rootB = find(b);
+            if(rootA == rootB){
+                return false;
+            }
+            parents[rootB] = rootA;
+            return true;
+        }
+
+        /**
+         * Finds the root of a label, halving the path on the way.
+         * @param label A label.
+         * @return Root label.
+         */
+        private int find(int label){
+            while(parents[label] != label){
+                parents[label] = parents[parents[label]];
+                label = parents[label];
+            }
+            return label;
+        }
+
+        /**
+         * Finds the first bit of a row at or after a position with a given value.
+         * @param row Words of the row.
+         * @param words Number of words of a row.
+         * @param from First checked position.
+         * @param set True to find a set bit, false to find a clear one.
+         * @return Position of the bit or -1 if there is none.
+         */
+        private static int nextBit(long[] row, int words, int from, boolean set){
+            int i = from >>> 6;
+            if(i >= words){
+                return -1;
+            }
+            long word = (set ? row[i] : ~row[i]) & (-1L << from);
+            while(word == 0){
+                if(++i == words){
+                    return -1;
+                }
+                word = set ? row[i] : ~row[i];
+            }
+            return (i << 6) + Long.numberOfTrailingZeros(word);
+        }
+
+        /**
+         * Number of regions found so far.
+         */
+        private long components;
+        /**
+         * Runs of the previous row: first and last positions and compacted labels.
+         */
+        private int[] previousStarts, previousEnds, previousLabels;
+        /**
+         * Number of runs of the previous row.
+         */
+        private int previousRuns;
+        /**
+         * Number of distinct labels of the previous row.
+         */
+        private int previousLabelCount;
+        /**
+         * Runs of the current row: first and last positions.
+         */
+        private int[] starts, ends;
+        /**
+         * Union-find forest over labels of the previous row and runs of the current one.
+         */
+        private int[] parents;
+        /**
+         * Compacted label of every root, -1 if not assigned yet.
+         */
+        private int[] compacted;
+    }
+
+    /**
+     * Number of openings.
+     */
+    private long openings;
+    /**
+     * Number of isolated numbers.
+     */
+    private long isolatedNumbers;
+    /**
+     * Number of islands.
+     */
+    private long islands;
+}
@@ -0,0 +1,196 @@
+package minesweeper.model;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps boards generated in advance, so a new game can be started
+ * without generating a board on the calling thread. When no board is
+ * ready, the model generates its board at the first reverse instead.
+ * Boards are generated on a single background thread and the pool of
+ * a given size is refilled every time a board is taken from it.
+ * Besides the predefined difficulties only the most recently taken
+ * custom size is kept, because custom boards may be very large, and
+ * custom boards larger than MAX_POOLED_FIELDS are never generated in advance.
+ */
+public class BoardPool {
+    /**
+     * Creates a pool and starts filling it for all predefined difficulties.
+     * @param boardsPerSize Number of boards kept ready for every board size.
+     */
+    public BoardPool(int boardsPerSize){
+        this.boardsPerSize = boardsPerSize;
+        slots = new HashMap<>();
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "BoardPool");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+
+        for(Model.Difficulty difficulty : Model.Difficulty.values()){
+            if(difficulty != Model.Difficulty.CUSTOM){
+                Slot slot = new Slot(difficulty.getWidth(), difficulty.getHeight(), difficulty.getBombs());
+                slots.put(key(slot.width, slot.height, slot.bombs), slot);
+                refill(slot);
+            }
+        }
+    }
+
+    /**
+     * Creates a model of a predefined difficulty. Custom boards are taken
+     * with take(width, height, bombs).
+     * @param difficulty Difficulty of creating game.
+     * @return Created model.
+     * @throws IllegalArgumentException If the difficulty is CUSTOM.
+     */
+    public Model take(Model.Difficulty difficulty){
+        if(difficulty == Model.Difficulty.CUSTOM){
+            throw new IllegalArgumentException("Custom boards need their width, height and bombs.");
+        }
+        Board board = takeBoard(difficulty.getWidth(), difficulty.getHeight(), difficulty.getBombs());
+        return board != null ? new Model(difficulty, board, difficulty.getBombs()) : new Model(difficulty);
+    }
+
+    /**
+     * Creates a model of a custom difficulty.
+     * @param width Width of a board.
+     * @param height Height of a board.
+     * @param bombs Bombs in a board.
+     * @return Created model.
+     */
+    public Model take(int width, int height, int bombs){
+        Board board = takeBoard(width, height, bombs);
+        return board != null ? new Model(Model.Difficulty.CUSTOM, board, bombs) : new Model(width, height, bombs);
+    }
+
+    /**
+     * Stops the background thread. Boards which are being generated are abandoned.
+     */
+    public void dispose(){
+        executor.shutdownNow();
+    }
+
+    /**
+     * Takes a ready board. A custom size
+     * equal to a predefined difficulty shares the slot of the difficulty,
+     * any other size replaces the previous custom slot.
+     * @param width Width of a board.
+     * @param height Height of a board.
+     * @param bombs Bombs in a board.
+     * @return A board or null if none is ready.
+     */
+    private Board takeBoard(int width, int height, int bombs){
+        Slot slot = slots.get(key(width, height, bombs));
+        if(slot == null){
+            if(customSlot == null || customSlot.width != width || customSlot.height != height ||
+                    customSlot.bombs != bombs){
+                if(customSlot != null){
+                    customSlot.registered = false;
+                }
+                customSlot = new Slot(width, height, bombs);
+            }
+            slot = customSlot;
+        }
+
+        Board board = slot.boards.poll();
+        if(board != null){
+            slot.scheduled.decrementAndGet();
+        }
+        refill(slot);
+        return board;
+    }
+
+    /**
+     * Schedules generation of boards missing in a slot, unless its boards are too large.
+     * A scheduled board is not generated if its slot is dropped in the meantime.
+     * @param slot The slot to refill.
+     */
+    private void refill(Slot slot){
+        if((long)slot.width*slot.height > MAX_POOLED_FIELDS){
+            return;
+        }
+        while(slot.scheduled.get() < boardsPerSize){
+            slot.scheduled.incrementAndGet();
+            executor.execute(() -> {
+                if(slot.registered){
+                    slot.boards.add(BoardGenerator.generate(slot.width, slot.height, slot.bombs, new Random().nextLong()));
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns a key of a slot of predefined difficulty.
+     * @param width Width of a board.
+     * @param height Height of a board.
+     * @param bombs Bombs in a board.
+     * @return The key.
+     */
+    private static String key(int width, int height, int bombs){
+        return width + "x" + height + "x" + bombs;
+    }
+
+    /**
+     * Largest number of fields of a custom board generated in advance.
+     */
+    private static final long MAX_POOLED_FIELDS = 1 << 22;
+
+    /**
+     * Number of boards kept ready for every board size.
+     */
+    private int boardsPerSize;
+    /**
+     * Slots of boards of predefined difficulties by board parameters ("width x height x bombs").
+     */
+    private HashMap<String, Slot> slots;
+    /**
+     * The slot of the most recently taken custom size.
+     */
+    private Slot customSlot;
+    /**
+     * Background thread generating boards.
+     */
+    private ExecutorService executor;
+
+    /**
+     * Boards of a single size.
+     */
+    private static class Slot {
+        /**
+         * Creates an empty slot.
+         * @param width Width of a board.
+         * @param height Height of a board.
+         * @param bombs Bombs in a board.
+         */
+        Slot(int width, int height, int bombs){
+            this.width = width;
+            this.height = height;
+            this.bombs = bombs;
+            boards = new ConcurrentLinkedQueue<>();
+            scheduled = new AtomicInteger();
+            registered = true;
+        }
+
+        /**
+         * Parameters of boards.
+         */
+        private int width, height, bombs;
+        /**
+         * Generated boards.
+         */
+        private ConcurrentLinkedQueue<Board> boards;
+        /**
+         * Number of generated boards plus boards still being generated.
+         */
+        private AtomicInteger scheduled;
+        /**
+         * False once the slot is dropped, so its scheduled boards are not generated.
+         */
+        private volatile boolean registered;
+    }
+}
@@ -0,0 +1,502 @@
+package minesweeper.model;
+
+import java.util.*;
+
+/**
+ * Model of an endless game.
+ * The board has no borders and is split into square chunks. Bombs of a chunk
+ * are derived only from the seed and the chunk coordinates, so every chunk
+ * can be generated on demand, dropped and generated again with the same
+ * content. Only the states of fields have to be remembered, and chunks which
+ * were not used recently keep them in a compressed form.
+ * <p>
+ * Memory is bounded: at most MAX_LIVE_CHUNKS chunks are decoded (about 4 kB each)
+ * and at most MAX_COMPRESSED_CHUNKS chunks are compressed (at most 1 kB each,
+ * nothing for an untouched chunk, which is not stored). When a running game
+ * exceeds the second limit, the chunk which left the screen the longest time
+ * ago is forgotten: its fields become unmarked again and are subtracted from
+ * the counters, so the player can reverse them once more.
+ */
+public class EndlessModel {
+    /**
+     * Creates an endless game.
+     * @param seed Seed from which all chunks are derived.
+     */
+    public EndlessModel(long seed){
+        this.seed = seed;
+        gameState = GameState.NOT_STARTED;
+        chunks = new LinkedHashMap<Long, Board>(16, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Board> eldest){
+                if(size() <= MAX_LIVE_CHUNKS){
+                    return false;
+                }
+                compress(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+        };
+        compressedChunks = new LinkedHashMap<Long, long[]>(){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, long[]> eldest){
+                // A finished game adds no new states, so it keeps all of them.
+                if(size() <= MAX_COMPRESSED_CHUNKS || gameState == GameState.BOMB_DETONATED){
+                    return false;
+                }
+                forget(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+        };
+        queue = new IntQueue();
+        scratch = new long[CHUNK_SIZE*CHUNK_SIZE/64];
+    }
+
+    /**
+     * Marks a field.
+     * @param x X-coordinate of a field.
+     * @param y Y-coordinate of a field.
+     * @return MarkChange object. Its bomb counter holds the number of marked fields.
+     */
+    public MarkChange mark(int x, int y){
+        if(gameState == GameState.BOMB_DETONATED){
+            return new MarkChange();
+        }
+
+        Board chunk = getChunk(x, y);
+        int index = localIndex(x, y);
+        if(!chunk.mark(index)){
+            return new MarkChange();
+        }
+        if(chunk.getState(index) == Board.MARKED){
+            ++numberOfMarkedFields;
+            return new MarkChange(MarkChange.State.MARKED, numberOfMarkedFields);
+        }
+        --numberOfMarkedFields;
+        return new MarkChange(MarkChange.State.UNMARKED, numberOfMarkedFields);
+    }
+
+    /**
+     * Reverses a field and all fields which it uncovers.
+     * @param x X-coordinate of a field.
+     * @param y Y-coordinate of a field.
+     * @return A ReverseChange object.
+     */
+    public ReverseChange reverse(int x, int y){
+        Board chunk = getChunk(x, y);
+        int index = localIndex(x, y);
+        int state = chunk.getState(index);
+        if(gameState == GameState.BOMB_DETONATED || state == Board.REVERSED || state == Board.MARKED){
+            return new ReverseChange();
+        }
+
+        gameState = GameState.RUNNING;
+        if(chunk.containsBomb(index)){
+            chunk.reverse(index);
+            gameState = GameState.BOMB_DETONATED;
+            return new ReverseChange(gameState, x, y);
+        }
+
+        chunk.reverse(index);
+        queue.add(x);
+        queue.add(y);
+        while(!queue.isEmpty()){
+            int currX = queue.take(), currY = queue.take();
+            int value = getChunk(currX, currY).getValue(localIndex(currX, currY));
+            ++numberOfReversedFields;
+            if(value != 0){
+                continue;
+            }
+            for(int i = currY - 1; i <= currY + 1; ++i){
+                for(int j = currX - 1; j <= currX + 1; ++j){
+                    Board neighbourChunk = getChunk(j, i);
+                    int neighbour = localIndex(j, i);
+                    // Reversed when queued, so the board state doubles as the visited set.
+                    if(neighbourChunk.getState(neighbour) == Board.UNMARKED){
+                        neighbourChunk.reverse(neighbour);
+                        queue.add(j);
+                        queue.add(i);
+                    }
+                }
+            }
+        }
+        ReverseChange reverseChange = createReverseChange();
+        queue.clear();
+        return reverseChange;
+    }
+
+    /**
+     * Creates a change from fields gathered in the queue. Positions are stored
+     * relative to the bounding box of the reversed fields.
+     * @return A ReverseChange object.
+     */
+    private ReverseChange createReverseChange(){
+        int left = Integer.MAX_VALUE, right = Integer.MIN_VALUE;
+        int top = Integer.MAX_VALUE, bottom = Integer.MIN_VALUE;
+        for(int i = 0; i < queue.size(); i += 2){
+            left = Math.min(left, queue.get(i));
+            right = Math.max(right, queue.get(i));
+            top = Math.min(top, queue.get(i + 1));
+            bottom = Math.max(bottom, queue.get(i + 1));
+        }
+
+        int width = right - left + 1;
+        int[] positions = new int[queue.size()/2];
+        byte[] values = new byte[positions.length];
+        for(int i = 0; i < positions.length; ++i){
+            int x = queue.get(2*i), y = queue.get(2*i + 1);
+            positions[i] = (y - top)*width + (x - left);
+            values[i] = (byte)getChunk(x, y).getValue(localIndex(x, y));
+        }
+        return new ReverseChange(false, null, width, left, top, positions, values);
+    }
+
+    /**
+     * Makes sure that all chunks overlapping a given rectangle are generated.
+     * Should be called when the displayed part of the board changes.
+     * @param x X-coordinate of the top left field.
+     * @param y Y-coordinate of the top left field.
+     * @param width Width of the rectangle.
+     * @param height Height of the rectangle.
+     */
+    public void touchViewport(int x, int y, int width, int height){
+        int firstChunkX = Math.floorDiv(x, CHUNK_SIZE), lastChunkX = Math.floorDiv(x + width - 1, CHUNK_SIZE);
+        int firstChunkY = Math.floorDiv(y, CHUNK_SIZE), lastChunkY = Math.floorDiv(y + height - 1, CHUNK_SIZE);
+        for(int chunkY = firstChunkY; chunkY <= lastChunkY; ++chunkY){
+            for(int chunkX = firstChunkX; chunkX <= lastChunkX; ++chunkX){
+                getChunk(chunkX*CHUNK_SIZE, chunkY*CHUNK_SIZE);
+            }
+        }
+    }
+
+    /**
+     * Returns what a player sees in a field. Chunks which were never
+     * generated contain only unmarked fields, so they are not generated
+     * just to be drawn.
+     * @param x X-coordinate of a field.
+     * @param y Y-coordinate of a field.
+     * @return Value of a reversed field (0-8), Model.FIELD_UNMARKED, Model.FIELD_MARKED or Model.FIELD_DETONATED.
+     */
+    public int getVisibleValue(int x, int y){
+        long key = key(Math.floorDiv(x, CHUNK_SIZE), Math.floorDiv(y, CHUNK_SIZE));
+        if(!chunks.containsKey(key) && !compressedChunks.containsKey(key)){
+            return Model.FIELD_UNMARKED;
+        }
+        Board chunk = getChunk(x, y);
+        int index = localIndex(x, y);
+        switch(chunk.getState(index)){
+            case Board.REVERSED:
+                return chunk.getValue(index);
+            case Board.MARKED:
+                return Model.FIELD_MARKED;
+            case Board.BOMB_DETONATED:
+                return Model.FIELD_DETONATED;
+            default:
+                return Model.FIELD_UNMARKED;
+        }
+    }
+
+    /**
+     * Returns current game state.
+     * @return Current game state.
+     */
+    public GameState getGameState(){
+        return gameState;
+    }
+
+    /**
+     * Returns number of already reversed fields.
+     * @return Number of reversed fields.
+     */
+    public long getNumberOfReversedFields(){
+        return numberOfReversedFields;
+    }
+
+    /**
+     * Returns number of chunks kept fully decoded in memory.
+     * @return Number of live chunks.
+     */
+    public int getNumberOfLiveChunks(){
+        return chunks.size();
+    }
+
+    /**
+     * Returns number of chunks whose states are kept only in a compressed form.
+     * @return Number of compressed chunks.
+     */
+    public int getNumberOfCompressedChunks(){
+        return compressedChunks.size();
+    }
+
+    /**
+     * Returns a chunk containing a field, generating or decompressing it if needed.
+     * @param x X-coordinate of a field.
+     * @param y Y-coordinate of a field.
+     * @return The chunk.
+     */
+    private Board getChunk(int x, int y){
+        int chunkX = Math.floorDiv(x, CHUNK_SIZE), chunkY = Math.floorDiv(y, CHUNK_SIZE);
+        if(lastChunk != null && chunkX == lastChunkX && chunkY == lastChunkY){
+            return lastChunk;
+        }
+
+        long key = key(chunkX, chunkY);
+        Board chunk = chunks.get(key);
+        if(chunk == null){
+            chunk = createChunk(chunkX, chunkY);
+            long[] states = compressedChunks.remove(key);
+            if(states != null){
+                decompress(chunk, states);
+            }
+            chunks.put(key, chunk);
+        }
+        lastChunk = chunk;
+        lastChunkX = chunkX;
+        lastChunkY = chunkY;
+        return chunk;
+    }
+
+    /**
+     * Generates bombs and values of a chunk. Values of border fields take
+     * bombs of adjacent chunks into account.
+     * @param chunkX X-coordinate of a chunk.
+     * @param chunkY Y-coordinate of a chunk.
+     * @return Generated chunk.
+     */
+    private Board createChunk(int chunkX, int chunkY){
+        Board chunk = new Board(CHUNK_SIZE, CHUNK_SIZE);
+        for(int dy = -1; dy <= 1; ++dy){
+            for(int dx = -1; dx <= 1; ++dx){
+                int[] bombPositions = placeBombs(chunkX + dx, chunkY + dy);
+                for(int position : bombPositions){
+                    // Position of the bomb relative to the generated chunk.
+                    int bombX = dx*CHUNK_SIZE + position % CHUNK_SIZE;
+                    int bombY = dy*CHUNK_SIZE + position / CHUNK_SIZE;
+                    if(dx == 0 && dy == 0){
+                        chunk.setBomb(position);
+                    }
+                    int left = Math.max(bombX - 1, 0), right = Math.min(bombX + 1, CHUNK_SIZE - 1);
+                    int top = Math.max(bombY - 1, 0), bottom = Math.min(bombY + 1, CHUNK_SIZE - 1);
+                    for(int i = top; i <= bottom; ++i){
+                        for(int j = left; j <= right; ++j){
+                            if(i != bombY || j != bombX){
+                                int index = i*CHUNK_SIZE + j;
+                                chunk.setValue(index, chunk.getValue(index) + 1);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return chunk;
+    }
+
+    /**
+     * Returns positions of bombs in a chunk. The result depends only on the seed
+     * and the chunk coordinates. Fields next to the field (0, 0) never contain bombs,
+     * so the game can always be started there.
+     * @param chunkX X-coordinate of a chunk.
+     * @param chunkY Y-coordinate of a chunk.
+     * @return Linear positions of bombs within the chunk.
+     */
+    private int[] placeBombs(int chunkX, int chunkY){
+        SplittableRandom random = new SplittableRandom(mix(seed ^ key(chunkX, chunkY)));
+        int size = CHUNK_SIZE*CHUNK_SIZE;
+        int[] positions = new int[BOMBS_PER_CHUNK];
+        int count = 0;
+        Arrays.fill(scratch, 0);
+        for(int j = size - BOMBS_PER_CHUNK; j < size; ++j){
+            int position = random.nextInt(j + 1);
+            if((scratch[position >>> 6] & (1L << position)) != 0){
+                position = j;
+            }
+            scratch[position >>> 6] |= 1L << position;
+            int x = chunkX*CHUNK_SIZE + position % CHUNK_SIZE, y = chunkY*CHUNK_SIZE + position / CHUNK_SIZE;
+            if(Math.abs(x) > 1 || Math.abs(y) > 1){
+                positions[count++] = position;
+            }
+        }
+        return count == positions.length ? positions : Arrays.copyOf(positions, count);
+    }
+
+    /**
+     * Stores states of a chunk which is removed from memory. Only states are kept,
+     * bombs and values are generated again when the chunk is needed.
+     * Untouched chunks are not stored at all.
+     * @param key Key of a chunk.
+     * @param chunk The chunk.
+     */
+    private void compress(long key, Board chunk){
+        if(chunk == lastChunk){
+            lastChunk = null;
+        }
+        long[] reversed = new long[chunk.size()/64], marked = new long[chunk.size()/64];
+        boolean touched = false, resolved = true, anyMarked = false;
+        for(int i = 0; i < chunk.size(); ++i){
+            int state = chunk.getState(i);
+            if(state == Board.MARKED){
+                marked[i >>> 6] |= 1L << i;
+                anyMarked = true;
+            }
+            else if(state == Board.REVERSED || state == Board.BOMB_DETONATED){
+                reversed[i >>> 6] |= 1L << i;
+            }
+            if(state != Board.UNMARKED){
+                touched = true;
+            }
+            if(state != Board.REVERSED && !chunk.containsBomb(i)){
+                resolved = false;
+            }
+        }
+
+        if(!touched){
+            return;
+        }
+        if(resolved){
+            compressedChunks.put(key, anyMarked ? marked : RESOLVED);
+        }
+        else{
+            long[] states = Arrays.copyOf(reversed, 2*reversed.length);
+            System.arraycopy(marked, 0, states, reversed.length, marked.length);
+            compressedChunks.put(key, states);
+        }
+    }
+
+    /**
+     * Restores states of a regenerated chunk.
+     * @param chunk Freshly generated chunk.
+     * @param states States stored by compress.
+     */
+    private void decompress(Board chunk, long[] states){
+        int words = chunk.size()/64;
+        boolean resolved = states.length <= words;
+        for(int i = 0; i < chunk.size(); ++i){
+            long bit = 1L << i;
+            boolean marked = resolved ? states.length > 0 && (states[i >>> 6] & bit) != 0 :
+                    (states[words + (i >>> 6)] & bit) != 0;
+            boolean reversed = resolved ? !chunk.containsBomb(i) : (states[i >>> 6] & bit) != 0;
+            if(marked){
+                chunk.setState(i, Board.MARKED);
+            }
+            else if(reversed){
+                chunk.reverse(i);
+            }
+        }
+    }
+
+    /**
+     * Subtracts states of a compressed chunk which is dropped from the counters.
+     * The chunk is generated again as untouched when it is needed.
+     * @param key Key of a chunk.
+     * @param states States stored by compress.
+     */
+    private void forget(long key, long[] states){
+        int words = CHUNK_SIZE*CHUNK_SIZE/64;
+        int reversed = 0, marked = 0;
+        if(states.length <= words){
+            // All safe fields of a resolved chunk are reversed, so only bombs can be marked.
+            reversed = CHUNK_SIZE*CHUNK_SIZE - placeBombs((int)(key >> 32), (int)key).length;
+            for(long word : states){
+                marked += Long.bitCount(word);
+            }
+        }
+        else{
+            for(int i = 0; i < words; ++i){
+                reversed += Long.bitCount(states[i]);
+                marked += Long.bitCount(states[words + i]);
+            }
+        }
+        numberOfReversedFields -= reversed;
+        numberOfMarkedFields -= marked;
+    }
+
+    /**
+     * Returns the position of a field within its chunk.
+     * @param x X-coordinate of a field.
+     * @param y Y-coordinate of a field.
+     * @return Linear index of a field in its chunk.
+     */
+    private static int localIndex(int x, int y){
+        return Math.floorMod(y, CHUNK_SIZE)*CHUNK_SIZE + Math.floorMod(x, CHUNK_SIZE);
+    }
+
+    /**
+     * Packs chunk coordinates into a single key.
+     * @param chunkX X-coordinate of a chunk.
+     * @param chunkY Y-coordinate of a chunk.
+     * @return The key.
+     */
+    private static long key(int chunkX, int chunkY){
+        return ((long)chunkX << 32) | (chunkY & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Scrambles bits of a number (the SplitMix64 finalizer).
+     * @param z Number to scramble.
+     * @return Scrambled number.
+     */
+    private static long mix(long z){
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Width and height of a chunk.
+     */
+    static final int CHUNK_SIZE = 64;
+    /**
+     * Bombs placed in every chunk (about 15.6% of its fields).
+     */
+    static final int BOMBS_PER_CHUNK = 640;
+    /**
+     * Number of chunks kept decoded before the least recently used ones get compressed.
+     */
+    private static final int MAX_LIVE_CHUNKS = 256;
+    /**
+     * Number of compressed chunks kept before the oldest ones are forgotten
+     * (at most about 19 MB, enough for 67 million fields touched by a player).
+     */
+    private static final int MAX_COMPRESSED_CHUNKS = 16384;
+    /**
+     * Compressed form of a chunk with all safe fields reversed and no marks.
+     */
+    private static final long[] RESOLVED = new long[0];
+
+    /**
+     * Seed from which all chunks are derived.
+     */
+    private long seed;
+    /**
+     * Decoded chunks in access order.
+     */
+    private LinkedHashMap<Long, Board> chunks;
+    /**
+     * States of chunks removed from memory in the order of removal. Either RESOLVED,
+     * a bitset of marked fields of a resolved chunk, or bitsets of reversed and marked fields.
+     */
+    private LinkedHashMap<Long, long[]> compressedChunks;
+    /**
+     * The most recently accessed chunk and its coordinates.
+     */
+    private Board lastChunk;
+    private int lastChunkX, lastChunkY;
+    /**
+     * Work queue of the flood fill holding x, y pairs.
+     */
+    private IntQueue queue;
+    /**
+     * Bitset used while placing bombs in a chunk.
+     */
+    private long[] scratch;
+    /**
+     * Current game state.
+     */
+    private GameState gameState;
+    /**
+     * Number of already reversed fields.
+     */
+    private long numberOfReversedFields;
+    /**
+     * Number of currently marked fields.
+     */
+    private int numberOfMarkedFields;
+}
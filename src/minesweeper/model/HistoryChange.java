@@ -0,0 +1,92 @@
+package minesweeper.model;
+
+/**
+ * Class used to contain information about an undo or redo operation.
+ * Holds all fields touched by the operation with their visible values
+ * after it (see Model.getVisibleValue).
+ */
+public class HistoryChange {
+    /**
+     * Initializes an object describing that nothing changed.
+     */
+    HistoryChange(){
+        this.positions = new int[0];
+        this.values = new byte[0];
+    }
+
+    /**
+     * Initializes an object from given fields.
+     * @param width Width of a board, used to decode positions.
+     * @param positions Linear positions of changed fields.
+     * @param values Visible values of changed fields.
+     * @param bombCounter Current bomb counter value.
+     * @param gameState Current game state.
+     */
+    HistoryChange(int width, int[] positions, byte[] values, int bombCounter, GameState gameState){
+        this.width = width;
+        this.positions = positions;
+        this.values = values;
+        this.bombCounter = bombCounter;
+        this.gameState = gameState;
+        this.isStateChanged = true;
+    }
+
+    /**
+     * Returns isStateChanged.
+     * @return True if any field changed.
+     */
+    public boolean isStateChanged() {
+        return isStateChanged;
+    }
+
+    /**
+     * Passes every changed field with its visible value to a consumer.
+     * @param consumer The consumer.
+     */
+    public void forEach(ReverseChange.FieldConsumer consumer){
+        for(int i = 0; i < positions.length; ++i){
+            consumer.accept(positions[i] % width, positions[i] / width, values[i]);
+        }
+    }
+
+    /**
+     * Returns bombCounter.
+     * @return Current bomb counter value.
+     */
+    public int getBombCounter() {
+        return bombCounter;
+    }
+
+    /**
+     * Returns current game state.
+     * @return Current game state.
+     */
+    public GameState getGameState() {
+        return gameState;
+    }
+
+    /**
+     * Linear positions of changed fields.
+     */
+    private int[] positions;
+    /**
+     * Visible values of changed fields.
+     */
+    private byte[] values;
+    /**
+     * Width of a board.
+     */
+    private int width;
+    /**
+     * Current value of bomb counter.
+     */
+    private int bombCounter;
+    /**
+     * Current game state.
+     */
+    private GameState gameState;
+    /**
+     * Indicates if any field changed.
+     */
+    private boolean isStateChanged;
+}
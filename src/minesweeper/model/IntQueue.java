@@ -0,0 +1,96 @@
+package minesweeper.model;
+
+import java.util.Arrays;
+
+/**
+ * Growable FIFO queue of primitive integers.
+ * Taken elements are not overwritten until the queue is cleared,
+ * so after a traversal all ever added elements can be read again
+ * with get(int).
+ */
+class IntQueue {
+    /**
+     * Creates an empty queue.
+     */
+    IntQueue(){
+        elements = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Adds an element at the end of the queue.
+     * @param element Element to add.
+     */
+    void add(int element){
+        if(tail == elements.length){
+            elements = Arrays.copyOf(elements, elements.length*2);
+        }
+        elements[tail++] = element;
+    }
+
+    /**
+     * Takes the first element which was not taken yet.
+     * @return Taken element.
+     */
+    int take(){
+        return elements[head++];
+    }
+
+    /**
+     * Returns true if all added elements were already taken.
+     * @return True if there is nothing more to take.
+     */
+    boolean isEmpty(){
+        return head == tail;
+    }
+
+    /**
+     * Returns number of elements added since the last clear.
+     * @return Number of added elements.
+     */
+    int size(){
+        return tail;
+    }
+
+    /**
+     * Returns an element added since the last clear.
+     * @param i Position of an element in order of adding.
+     * @return The element.
+     */
+    int get(int i){
+        return elements[i];
+    }
+
+    /**
+     * Copies all elements added since the last clear.
+     * @return Array of added elements.
+     */
+    int[] toArray(){
+        return Arrays.copyOf(elements, tail);
+    }
+
+    /**
+     * Removes all elements. The allocated memory is kept for reuse.
+     */
+    void clear(){
+        head = 0;
+        tail = 0;
+    }
+
+    /**
+     * Initial size of the internal array.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Queue elements.
+     */
+    private int[] elements;
+    /**
+     * Position of the next element to take.
+     */
+    private int head;
+    /**
+     * Position of the next element to add.
+     */
+    private int tail;
+}
@@ -0,0 +1,209 @@
+package minesweeper.model;
+
+import java.util.Arrays;
+
+/**
+ * Journal of actions done in a game, used to undo and redo them.
+ * Every entry keeps the action, the counters from before the action and
+ * linear indices of fields changed by it, all in primitive arrays, so the
+ * cost of an entry is proportional to the number of changed fields.
+ * Entries before the cursor are applied, entries after it can be redone.
+ */
+class Journal {
+    /**
+     * Creates an empty journal.
+     */
+    Journal(){
+        actions = new byte[INITIAL_CAPACITY];
+        coordinates = new int[2*INITIAL_CAPACITY];
+        counters = new int[2*INITIAL_CAPACITY];
+        gameStates = new byte[INITIAL_CAPACITY];
+        fieldsStart = new int[INITIAL_CAPACITY + 1];
+        fields = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Records an action. All entries which could be redone are dropped.
+     * @param action One of MARK, REVERSE, CHORD.
+     * @param x X-coordinate of the action.
+     * @param y Y-coordinate of the action.
+     * @param bombIndicator Bomb indicator before the action.
+     * @param reversedFields Number of reversed fields before the action.
+     * @param gameState Game state before the action.
+     * @param changed Linear indices of changed fields.
+     * @param count Number of changed fields.
+     */
+    void record(int action, int x, int y, int bombIndicator, int reversedFields, GameState gameState,
+                int[] changed, int count){
+        size = cursor;
+        if(size == actions.length){
+            int capacity = 2*actions.length;
+            actions = Arrays.copyOf(actions, capacity);
+            coordinates = Arrays.copyOf(coordinates, 2*capacity);
+            counters = Arrays.copyOf(counters, 2*capacity);
+            gameStates = Arrays.copyOf(gameStates, capacity);
+            fieldsStart = Arrays.copyOf(fieldsStart, capacity + 1);
+        }
+        int start = fieldsStart[size];
+        if(start + count > fields.length){
+            fields = Arrays.copyOf(fields, Math.max(2*fields.length, start + count));
+        }
+
+        actions[size] = (byte)action;
+        coordinates[2*size] = x;
+        coordinates[2*size + 1] = y;
+        counters[2*size] = bombIndicator;
+        counters[2*size + 1] = reversedFields;
+        gameStates[size] = (byte)gameState.ordinal();
+        System.arraycopy(changed, 0, fields, start, count);
+        fieldsStart[size + 1] = start + count;
+        cursor = ++size;
+    }
+
+    /**
+     * Returns true if there is an applied entry.
+     * @return True if an action can be undone.
+     */
+    boolean canUndo(){
+        return cursor > 0;
+    }
+
+    /**
+     * Returns true if there is an undone entry.
+     * @return True if an action can be redone.
+     */
+    boolean canRedo(){
+        return cursor < size;
+    }
+
+    /**
+     * Moves the cursor one entry back.
+     * @return Index of the entry to undo.
+     */
+    int undo(){
+        return --cursor;
+    }
+
+    /**
+     * Moves the cursor one entry forward.
+     * @return Index of the entry to redo.
+     */
+    int redo(){
+        return cursor++;
+    }
+
+    /**
+     * Returns the action of an entry.
+     * @param entry Index of an entry.
+     * @return One of MARK, REVERSE, CHORD.
+     */
+    int getAction(int entry){
+        return actions[entry];
+    }
+
+    /**
+     * Returns X-coordinate of the action of an entry.
+     * @param entry Index of an entry.
+     * @return X-coordinate.
+     */
+    int getX(int entry){
+        return coordinates[2*entry];
+    }
+
+    /**
+     * Returns Y-coordinate of the action of an entry.
+     * @param entry Index of an entry.
+     * @return Y-coordinate.
+     */
+    int getY(int entry){
+        return coordinates[2*entry + 1];
+    }
+
+    /**
+     * Returns bomb indicator from before the action of an entry.
+     * @param entry Index of an entry.
+     * @return Bomb indicator.
+     */
+    int getBombIndicator(int entry){
+        return counters[2*entry];
+    }
+
+    /**
+     * Returns number of reversed fields from before the action of an entry.
+     * @param entry Index of an entry.
+     * @return Number of reversed fields.
+     */
+    int getReversedFields(int entry){
+        return counters[2*entry + 1];
+    }
+
+    /**
+     * Returns game state from before the action of an entry.
+     * @param entry Index of an entry.
+     * @return Game state.
+     */
+    GameState getGameState(int entry){
+        return GameState.values()[gameStates[entry]];
+    }
+
+    /**
+     * Returns fields changed by the action of an entry.
+     * @param entry Index of an entry.
+     * @return Linear indices of changed fields.
+     */
+    int[] getFields(int entry){
+        return Arrays.copyOfRange(fields, fieldsStart[entry], fieldsStart[entry + 1]);
+    }
+
+    /**
+     * Returns number of bytes allocated by the journal.
+     * @return Allocated memory in bytes.
+     */
+    long getMemoryUsage(){
+        return actions.length + 4L*coordinates.length + 4L*counters.length + gameStates.length +
+                4L*fieldsStart.length + 4L*fields.length;
+    }
+
+    /**
+     * Actions stored in entries.
+     */
+    static final int MARK = 0, REVERSE = 1, CHORD = 2;
+
+    /**
+     * Initial number of entries and fields.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Actions of entries.
+     */
+    private byte[] actions;
+    /**
+     * X and Y coordinates of actions, two per entry.
+     */
+    private int[] coordinates;
+    /**
+     * Bomb indicator and number of reversed fields before actions, two per entry.
+     */
+    private int[] counters;
+    /**
+     * Ordinals of game states before actions.
+     */
+    private byte[] gameStates;
+    /**
+     * Position in fields of the first changed field of every entry.
+     */
+    private int[] fieldsStart;
+    /**
+     * Changed fields of all entries.
+     */
+    private int[] fields;
+    /**
+     * Number of stored entries.
+     */
+    private int size;
+    /**
+     * Number of applied entries.
+     */
+    private int cursor;
+}
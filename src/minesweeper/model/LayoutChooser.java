@@ -0,0 +1,21 @@
+package minesweeper.model;
+
+/**
+ * Chooses the layout of bombs when the first field of a game is reversed.
+ * A layout is identified by a seed: a headless model created with the seed
+ * and reversed at the same field always gets the same board, so a chooser
+ * can try out candidate seeds on such models before choosing one.
+ */
+public interface LayoutChooser {
+    /**
+     * Chooses a seed of the board.
+     * @param width Width of a board.
+     * @param height Height of a board.
+     * @param bombs Bombs in a board.
+     * @param x X-coordinate of the first reversed field.
+     * @param y Y-coordinate of the first reversed field.
+     * @param seed Seed of the model, a source of randomness for the choice.
+     * @return Seed of the chosen board.
+     */
+    long chooseSeed(int width, int height, int bombs, int x, int y, long seed);
+}
@@ -1,6 +1,5 @@
 package minesweeper.model;
 
-import javafx.util.Pair;
 import minesweeper.model.exceptions.WrongBoardParametersException;
 
 import java.util.*;
@@ -15,19 +14,78 @@ public class Model {
      */
     public Model(Difficulty difficulty){
         initBoard(difficulty);
-        timer = new Timer();
         numberOfReversedFields = 0;
         gameState = GameState.NOT_STARTED;
         timerObservable = new TimerObservable();
         this.difficulty = difficulty;
     }
 
+    /**
+     * Creates a model object of a custom difficulty.
+     * @param width Width of a board.
+     * @param height Height of a board.
+     * @param bombs Bombs in a board.
+     */
+    public Model(int width, int height, int bombs){
+        initBoard(width, height, bombs);
+        numberOfReversedFields = 0;
+        gameState = GameState.NOT_STARTED;
+        timerObservable = new TimerObservable();
+        this.difficulty = Difficulty.CUSTOM;
+    }
+
+    /**
+     * Creates a model object whose board is generated from a seed. Models
+     * with the same parameters and seed get the same board if their first
+     * reversed field is the same.
+     * @param width Width of a board.
+     * @param height Height of a board.
+     * @param bombs Bombs in a board.
+     * @param seed Seed used to generate the board.
+     */
+    public Model(int width, int height, int bombs, long seed){
+        this(width, height, bombs);
+        this.seed = seed;
+    }
+
+    /**
+     * Creates a model object on an already generated board.
+     * @param difficulty Difficulty of creating game.
+     * @param board Generated board.
+     * @param bombs Bombs in the board.
+     */
+    Model(Difficulty difficulty, Board board, int bombs){
+        initBoard(board, bombs);
+        numberOfReversedFields = 0;
+        gameState = GameState.NOT_STARTED;
+        timerObservable = new TimerObservable();
+        this.difficulty = difficulty;
+    }
+
+    /**
+     * Creates a model which never starts a timer thread, for playing many
+     * games without a user interface. The board is generated from the given
+     * seed, so games are reproducible.
+     * @param width Width of a board.
+     * @param height Height of a board.
+     * @param bombs Bombs in a board.
+     * @param seed Seed used to generate the board.
+     * @return Created model.
+     */
+    public static Model createHeadless(int width, int height, int bombs, long seed){
+        Model model = new Model(width, height, bombs, seed);
+        model.headless = true;
+        return model;
+    }
+
     /**
      * Cleans up running threads and removes set observers.
      */
     public void dispose(){
-        timer.cancel();
-        timer.purge();
+        if(timer != null){
+            timer.cancel();
+            timer.purge();
+        }
         timerObservable.deleteObservers();
     }
 
@@ -40,24 +98,26 @@ public class Model {
      * @return MarkChange object.
      */
     public MarkChange mark(int x, int y){
-        Field field = getField(x, y);
+        int index = getIndex(x, y);
+        int state = board.getState(index);
         if(gameState == GameState.BOMB_DETONATED || gameState == GameState.SOLVED ||
-                (field.getState() == Field.State.MARKED && bombIndicator == bombs) ||
-                (field.getState() == Field.State.UNMARKED && bombIndicator <= 0)){
+                (state == Board.MARKED && bombIndicator == bombs) ||
+                (state == Board.UNMARKED && bombIndicator <= 0)){
             return new MarkChange();
         }
 
-        boolean isStateChanged = field.mark();
+        boolean isStateChanged = board.mark(index);
         if(!isStateChanged){
             return new MarkChange();
         }
-        if(field.getState() == Field.State.MARKED){
+        record(Journal.MARK, x, y, bombIndicator, numberOfReversedFields, gameState, new int[]{index});
+        if(board.getState(index) == Board.MARKED){
             --bombIndicator;
         }
         else{
             ++bombIndicator;
         }
-        MarkChange.State markState = field.getState() == Field.State.MARKED ?
+        MarkChange.State markState = board.getState(index) == Board.MARKED ?
                 MarkChange.State.MARKED : MarkChange.State.UNMARKED;
         return new MarkChange(markState, bombIndicator);
     }
@@ -69,25 +129,254 @@ public class Model {
      * @return A ReverseChange object.
      */
     public ReverseChange reverse(int x, int y){
-        Field field = getField(x, y);
+        int index = getIndex(x, y);
+        int state = board.getState(index);
         if(gameState == GameState.BOMB_DETONATED || gameState == GameState.SOLVED ||
-                field.getState() == Field.State.REVERSED || field.getState() == Field.State.MARKED){
-            return new ReverseChange(new ArrayList<>(), new ArrayList<>());
+                state == Board.REVERSED || state == Board.MARKED){
+            return new ReverseChange();
         }
 
-        if(field.containsBomb()){
+        if(!layoutFixed){
+            fixLayout(x, y);
+        }
+        if(board.containsBomb(index)){
+            record(Journal.REVERSE, x, y, bombIndicator, numberOfReversedFields, gameState, new int[]{index});
+            board.reverse(index);
             gameState = GameState.BOMB_DETONATED;
-            return new ReverseChange(gameState);
+            return new ReverseChange(gameState, x, y);
         }
 
         return reverseField(x, y);
     }
 
     /**
-     * Runs a game.
+     * Reverses all not marked neighbours of a reversed field, providing
+     * that the number of marked neighbours equals the value of the field.
+     * All cascades are merged into a single change.
+     * @param x X-coordinate of a field.
+     * @param y Y-coordinate of a field.
+     * @return A ReverseChange object.
+     */
+    public ReverseChange chord(int x, int y){
+        int index = getIndex(x, y);
+        int value = board.getValue(index);
+        if(gameState == GameState.BOMB_DETONATED || gameState == GameState.SOLVED ||
+                board.getState(index) != Board.REVERSED || value == 0){
+            return new ReverseChange();
+        }
+
+        int left = Math.max(x - 1, 0), right = Math.min(x + 1, width - 1);
+        int top = Math.max(y - 1, 0), bottom = Math.min(y + 1, height - 1);
+        int marked = 0;
+        for(int i = top; i <= bottom; ++i){
+            for(int j = left; j <= right; ++j){
+                if(board.getState(board.index(j, i)) == Board.MARKED){
+                    ++marked;
+                }
+            }
+        }
+        if(marked != value){
+            return new ReverseChange();
+        }
+
+        for(int i = top; i <= bottom; ++i){
+            for(int j = left; j <= right; ++j){
+                int neighbour = board.index(j, i);
+                if(board.getState(neighbour) == Board.UNMARKED && board.containsBomb(neighbour)){
+                    record(Journal.CHORD, x, y, bombIndicator, numberOfReversedFields, gameState, new int[]{neighbour});
+                    board.reverse(neighbour);
+                    gameState = GameState.BOMB_DETONATED;
+                    return new ReverseChange(gameState, j, i);
+                }
+            }
+        }
+
+        for(int i = top; i <= bottom; ++i){
+            for(int j = left; j <= right; ++j){
+                queueField(board.index(j, i));
+            }
+        }
+        return reverseQueuedFields(Journal.CHORD, x, y);
+    }
+
+    /**
+     * Sets a chooser of the layout of bombs, which is asked for a seed when
+     * the first field is reversed. The board is then generated from that seed,
+     * even if it was generated in advance. Has no effect after the first reverse.
+     * @param layoutChooser Chooser of the layout or null to keep the generated board.
+     */
+    public void setLayoutChooser(LayoutChooser layoutChooser){
+        this.layoutChooser = layoutChooser;
+    }
+
+    /**
+     * Starts recording all actions, so they can be undone and redone.
+     * Actions done before this call cannot be undone.
+     */
+    public void enableJournal(){
+        if(journal == null){
+            journal = new Journal();
+        }
+    }
+
+    /**
+     * Returns true if there is an action which can be undone.
+     * @return True if undo is possible.
+     */
+    public boolean canUndo(){
+        return journal != null && journal.canUndo();
+    }
+
+    /**
+     * Returns true if there is an undone action which can be redone.
+     * @return True if redo is possible.
+     */
+    public boolean canRedo(){
+        return journal != null && journal.canRedo();
+    }
+
+    /**
+     * Undoes the last action. Only fields changed by the action are restored,
+     * together with the bomb indicator, number of reversed fields and game state.
+     * @return A HistoryChange object.
+     */
+    public HistoryChange undo(){
+        if(!canUndo()){
+            return new HistoryChange();
+        }
+
+        int entry = journal.undo();
+        int[] fields = journal.getFields(entry);
+        for(int field : fields){
+            if(journal.getAction(entry) == Journal.MARK){
+                board.mark(field);
+            }
+            else{
+                board.setState(field, Board.UNMARKED);
+            }
+        }
+        bombIndicator = journal.getBombIndicator(entry);
+        numberOfReversedFields = journal.getReversedFields(entry);
+        gameState = journal.getGameState(entry);
+        return createHistoryChange(fields);
+    }
+
+    /**
+     * Redoes the last undone action by running it again. The layout of bombs
+     * is fixed after the first reverse, so the action changes the same fields.
+     * @return A HistoryChange object.
+     */
+    public HistoryChange redo(){
+        if(!canRedo()){
+            return new HistoryChange();
+        }
+
+        int entry = journal.redo();
+        int x = journal.getX(entry), y = journal.getY(entry);
+        replaying = true;
+        switch(journal.getAction(entry)){
+            case Journal.MARK:
+                mark(x, y);
+                break;
+            case Journal.REVERSE:
+                reverse(x, y);
+                break;
+            case Journal.CHORD:
+                chord(x, y);
+                break;
+        }
+        replaying = false;
+        return createHistoryChange(journal.getFields(entry));
+    }
+
+    /**
+     * Returns number of bytes used by the undo journal.
+     * @return Memory used by the journal in bytes.
+     */
+    public long getJournalMemoryUsage(){
+        return journal == null ? 0 : journal.getMemoryUsage();
+    }
+
+    /**
+     * Returns number of bytes used by the index of openings.
+     * @return Memory used by the index in bytes, 0 if openings are not indexed.
+     */
+    public long getOpeningIndexMemoryUsage(){
+        return openingIndex == null ? 0 : openingIndex.getMemoryUsage();
+    }
+
+    /**
+     * Returns what a player sees in a field.
+     * @param x X-coordinate of a field.
+     * @param y Y-coordinate of a field.
+     * @return Value of a reversed field (0-8), FIELD_UNMARKED, FIELD_MARKED or FIELD_DETONATED.
+     */
+    public int getVisibleValue(int x, int y){
+        return getVisibleValue(getIndex(x, y));
+    }
+
+    /**
+     * Returns number of openings of the board, that is areas reversed by a
+     * single click on a field without adjacent bombs.
+     * @return Number of openings or -1 if the layout is not fixed yet or the board is too large to index.
+     */
+    public int getNumberOfOpenings(){
+        return openingIndex != null ? openingIndex.getOpenings() : -1;
+    }
+
+    /**
+     * Returns sizes of all openings of the board, including their numbered borders.
+     * @return Number of fields of every opening or null if openings are not indexed.
+     */
+    public int[] getOpeningSizes(){
+        if(openingIndex == null){
+            return null;
+        }
+        int[] sizes = new int[openingIndex.getOpenings()];
+        for(int opening = 0; opening < sizes.length; ++opening){
+            sizes[opening] = openingIndex.getSize(opening);
+        }
+        return sizes;
+    }
+
+    /**
+     * Returns difficulty metrics of the board: 3BV, openings and islands.
+     * They are computed by the first call in a single pass over the board.
+     * @return Metrics of the board or null if the layout is not fixed yet.
+     */
+    public BoardMetrics getBoardMetrics(){
+        if(metrics == null && layoutFixed){
+            metrics = BoardMetrics.compute(board);
+        }
+        return metrics;
+    }
+
+    /**
+     * Returns time between the first reverse and solving the board.
+     * @return Duration in nanoseconds or 0 if the board is not solved.
+     */
+    public long getSolveNanos(){
+        return gameState == GameState.SOLVED ? solveNanos : 0;
+    }
+
+    /**
+     * Returns efficiency of the player, 3BV of the board solved per second.
+     * @return 3BV per second or 0 if the board is not solved.
+     */
+    public double getThreeBVPerSecond(){
+        return gameState == GameState.SOLVED ? getBoardMetrics().getThreeBVPerSecond(solveNanos) : 0;
+    }
+
+    /**
+     * Runs a game. The timer thread is started by the first call,
+     * unless the model is headless.
      */
     public void start(){
         gameState = GameState.RUNNING;
+        if(headless || timer != null){
+            return;
+        }
+        timer = new Timer();
         timer.scheduleAtFixedRate(new TimerTask() {
             @Override
             public void run() {
@@ -99,6 +388,14 @@ public class Model {
         }, 0, 1000);
     }
 
+    /**
+     * Returns the current state of a game.
+     * @return Game state.
+     */
+    public GameState getGameState(){
+        return gameState;
+    }
+
     /**
      * Gets a bomb indicator.
      * @return Current bomb indicator value.
@@ -123,6 +420,14 @@ public class Model {
         return height;
     }
 
+    /**
+     * Returns number of bombs in a board.
+     * @return Number of bombs.
+     */
+    public int getBombs(){
+        return bombs;
+    }
+
     /**
      * Add observer to a timer.
      * @param observer Observed to add to timer.
@@ -140,6 +445,85 @@ public class Model {
         return difficulty;
     }
 
+    /**
+     * Records an action in the journal if the journal is enabled.
+     * @param action One of journal actions.
+     * @param x X-coordinate of the action.
+     * @param y Y-coordinate of the action.
+     * @param bombIndicator Bomb indicator before the action.
+     * @param reversedFields Number of reversed fields before the action.
+     * @param gameState Game state before the action.
+     * @param fields Linear indices of changed fields.
+     */
+    private void record(int action, int x, int y, int bombIndicator, int reversedFields, GameState gameState,
+                        int[] fields){
+        if(journal != null && !replaying && fields.length > 0){
+            journal.record(action, x, y, bombIndicator, reversedFields, gameState, fields, fields.length);
+        }
+    }
+
+    /**
+     * Creates a change describing current visible values of given fields.
+     * @param fields Linear indices of fields.
+     * @return A HistoryChange object.
+     */
+    private HistoryChange createHistoryChange(int[] fields){
+        byte[] values = new byte[fields.length];
+        for(int i = 0; i < fields.length; ++i){
+            values[i] = (byte)getVisibleValue(fields[i]);
+        }
+        return new HistoryChange(width, fields, values, bombIndicator, gameState);
+    }
+
+    /**
+     * Returns what a player sees in a field.
+     * @param index Linear index of a field.
+     * @return Value of a reversed field (0-8), FIELD_UNMARKED, FIELD_MARKED or FIELD_DETONATED.
+     */
+    private int getVisibleValue(int index){
+        switch(board.getState(index)){
+            case Board.REVERSED:
+                return board.getValue(index);
+            case Board.MARKED:
+                return FIELD_MARKED;
+            case Board.BOMB_DETONATED:
+                return FIELD_DETONATED;
+            default:
+                return FIELD_UNMARKED;
+        }
+    }
+
+    /**
+     * Generates the board if it was not generated yet, or from a seed given by
+     * the layout chooser, and moves bombs away from the first reversed field
+     * and its neighbours, so the first reverse never detonates a bomb.
+     * @param x X-coordinate of the first reversed field.
+     * @param y Y-coordinate of the first reversed field.
+     */
+    private void fixLayout(int x, int y){
+        if(layoutChooser != null){
+            seed = layoutChooser.chooseSeed(width, height, bombs, x, y, seed);
+            Board chosen = BoardGenerator.generate(width, height, bombs, seed);
+            for(int index = 0; index < board.size(); ++index){
+                if(board.getState(index) == Board.MARKED){
+                    chosen.setState(index, Board.MARKED);
+                }
+            }
+            board = chosen;
+            boardGenerated = true;
+        }
+        if(!boardGenerated){
+            BoardGenerator.generate(board, bombs, seed);
+            boardGenerated = true;
+        }
+        BoardGenerator.clearArea(board, bombs, x, y, seed);
+        layoutFixed = true;
+        layoutNanos = System.nanoTime();
+        if(board.size() <= OPENING_INDEX_MAX_FIELDS){
+            openingIndex = new OpeningIndex(board);
+        }
+    }
+
     /**
      * Reverses all fields beginning from a field of position (x,y).
      * @param x X-position of starting field.
@@ -147,162 +531,184 @@ public class Model {
      * @return A ReverseChange object.
      */
     private ReverseChange reverseField(int x, int y){
-        ArrayList<Pair<Integer, Integer>> positions = new ArrayList<>();
-        ArrayList<Integer> values = new ArrayList<>();
-        Set<Pair<Integer, Integer>> set = new HashSet<>();
-        Stack<Pair<Integer, Integer>> stack = new Stack<>();
-        stack.push(new Pair<>(x, y));
-
-        while(!stack.empty()){
-            Pair<Integer, Integer> position = stack.pop();
-            int currX = position.getKey(), currY = position.getValue();
-            if(areCoordinatorsValid(currX, currY) || set.contains(position)){
-                continue;
-            }
-            set.add(position);
-            Field field = getField(currX, currY);
-            if(field.getState() == Field.State.MARKED || field.getState() == Field.State.REVERSED){
-                continue;
-            }
-            field.reverse();
-            ++numberOfReversedFields;
-            int value = field.getValue();
-            positions.add(position);
-            values.add(value);
-            if(value == 0){
-                stack.push(new Pair<>(currX-1, currY-1));
-                stack.push(new Pair<>(currX, currY-1));
-                stack.push(new Pair<>(currX+1, currY-1));
-                stack.push(new Pair<>(currX+1, currY));
-                stack.push(new Pair<>(currX+1, currY+1));
-                stack.push(new Pair<>(currX, currY+1));
-                stack.push(new Pair<>(currX-1, currY+1));
-                stack.push(new Pair<>(currX-1, currY));
+        int index = board.index(x, y);
+        int opening = openingIndex != null ? openingIndex.getOpening(index) : -1;
+        if(opening >= 0 && reverseOpening(opening)){
+            return finishReverse(Journal.REVERSE, x, y);
+        }
+        queueField(index);
+        return reverseQueuedFields(Journal.REVERSE, x, y);
+    }
+
+    /**
+     * Reverses all fields of a precomputed opening. The search would stop at
+     * marked fields and at zero fields already reversed, so in such a case
+     * nothing is reversed and the opening has to be searched.
+     * @param opening Number of the opening.
+     * @return True if the opening was reversed.
+     */
+    private boolean reverseOpening(int opening){
+        int size = openingIndex.getSize(opening);
+        for(int i = 0; i < size; ++i){
+            int index = openingIndex.getField(opening, i);
+            int state = board.getState(index);
+            if(state == Board.MARKED || (state == Board.REVERSED && board.getValue(index) == 0)){
+                return false;
             }
         }
 
-        if(numberOfReversedFields == width*height - bombs){
-            gameState = GameState.SOLVED;
-            return new ReverseChange(gameState, positions, values);
+        initQueues();
+        for(int i = 0; i < size; ++i){
+            int index = openingIndex.getField(opening, i);
+            if(board.getState(index) != Board.REVERSED){
+                board.reverse(index);
+                ++numberOfReversedFields;
+                reversedFields.add(index);
+            }
         }
-        return new ReverseChange(positions, values);
+        return true;
     }
 
     /**
-     * Initializes all variables related to a board and given difficulty
-     * and generates a board.
-     * @param difficulty Difficulty of a game to generate.
+     * Allocates queues used by reverses, unless they already exist.
      */
-    private void initBoard(Difficulty difficulty){
-        switch(difficulty){
-            case EASY:
-                height = 9;
-                width = 9;
-                bombs = 10;
-                break;
-            case MEDIUM:
-                height = 16;
-                width = 16;
-                bombs = 40;
-                break;
-            case HARD:
-                height = 16;
-                width = 30;
-                bombs = 99;
-                break;
-            default:
-                throw new IndexOutOfBoundsException("Enumerated out of difficulty enum");
+    private void initQueues(){
+        if(visited == null){
+            visited = new long[(board.size() + 63) >>> 6];
+            queue = new IntQueue();
+            reversedFields = new IntQueue();
         }
-
-        bombIndicator = bombs;
-        board = createBoard(height, width, bombIndicator);
     }
 
     /**
-     * Generates a board.
-     * @param height Height of a board.
-     * @param width Width of a board.
-     * @param bombs Bombs in a board.
-     * @return Two-dimensional list of fields representation of a board.
+     * Adds a field to the reverse queue unless it was already queued.
+     * @param index Linear index of a field.
      */
-    private ArrayList<ArrayList<Field>> createBoard(int height, int width, int bombs){
-        if(width < 1 || height < 1 || bombs > width*height){
-            throw new WrongBoardParametersException("Cannot create a board with given parameters.");
+    private void queueField(int index){
+        initQueues();
+        long bit = 1L << index;
+        if((visited[index >>> 6] & bit) == 0){
+            visited[index >>> 6] |= bit;
+            queue.add(index);
         }
+    }
 
-        ArrayList<ArrayList<Field>> board = new ArrayList<>();
-        Set<Integer> bombsLinearPositions = new HashSet<>(generateRandomNumbers(height*width, bombs));
-        for(int i = 0; i<height; ++i){
-            board.add(new ArrayList<>());
-            for(int j = 0; j<width; ++j){
-                boolean containsBomb = bombsLinearPositions.contains(i*width + j);
-                int numberOfAdjacentBombs = getNumberOfAdjacent(bombsLinearPositions, width, height, i * width + j);
-                board.get(i).add(new Field(containsBomb, numberOfAdjacentBombs));
+    /**
+     * Reverses all queued fields together with fields which they uncover.
+     * @param action Journal action which queued the fields.
+     * @param x X-coordinate of the action.
+     * @param y Y-coordinate of the action.
+     * @return A ReverseChange object.
+     */
+    private ReverseChange reverseQueuedFields(int action, int x, int y){
+        while(!queue.isEmpty()){
+            int index = queue.take();
+            int state = board.getState(index);
+            if(state == Board.MARKED || state == Board.REVERSED){
+                continue;
+            }
+            board.reverse(index);
+            ++numberOfReversedFields;
+            reversedFields.add(index);
+            if(board.getValue(index) == 0){
+                int currX = index % width, currY = index / width;
+                int left = Math.max(currX - 1, 0), right = Math.min(currX + 1, width - 1);
+                int top = Math.max(currY - 1, 0), bottom = Math.min(currY + 1, height - 1);
+                for(int i = top; i <= bottom; ++i){
+                    for(int j = left; j <= right; ++j){
+                        queueField(i*width + j);
+                    }
+                }
             }
         }
 
-        return board;
+        for(int i = 0; i < queue.size(); ++i){
+            int index = queue.get(i);
+            visited[index >>> 6] &= ~(1L << index);
+        }
+        queue.clear();
+        return finishReverse(action, x, y);
     }
 
     /**
-     * Generates n random integers from the range (1,n).
-     * @param range Right boundary of the range.
-     * @param n Number to generate.
-     * @return Array of generated integers.
+     * Records fields reversed by an action and checks if the game is solved.
+     * @param action Journal action which reversed the fields.
+     * @param x X-coordinate of the action.
+     * @param y Y-coordinate of the action.
+     * @return A ReverseChange object.
      */
-    private ArrayList<Integer> generateRandomNumbers(int range, int n){
-        Integer[] arr = new Integer[range];
-        for (int i = 0; i < arr.length; i++) {
-            arr[i] = i;
+    private ReverseChange finishReverse(int action, int x, int y){
+        int[] positions = reversedFields.toArray();
+        reversedFields.clear();
+        byte[] values = new byte[positions.length];
+        for(int i = 0; i < positions.length; ++i){
+            values[i] = (byte)board.getValue(positions[i]);
+        }
+        record(action, x, y, bombIndicator, numberOfReversedFields - positions.length, gameState, positions);
+
+        if(numberOfReversedFields == width*height - bombs){
+            gameState = GameState.SOLVED;
+            solveNanos = System.nanoTime() - layoutNanos;
+            return new ReverseChange(gameState, width, positions, values);
         }
-        Collections.shuffle(Arrays.asList(arr));
+        return new ReverseChange(width, positions, values);
+    }
 
-        return new ArrayList<>(Arrays.asList(Arrays.copyOf(arr, n)));
+    /**
+     * Initializes all variables related to a board and given difficulty.
+     * @param difficulty Difficulty of a game to generate.
+     */
+    private void initBoard(Difficulty difficulty){
+        if(difficulty == Difficulty.CUSTOM){
+            throw new WrongBoardParametersException("Custom difficulty requires explicit board parameters.");
+        }
+        initBoard(difficulty.getWidth(), difficulty.getHeight(), difficulty.getBombs());
     }
 
     /**
-     * Returns number of fields which are adjacent to field of given linear
-     * position and holds a bomb.
-     * @param linearPositions Current set of visited fields.
+     * Initializes all variables related to a board of given parameters.
+     * Bombs are placed only at the first reverse.
      * @param width Width of a board.
      * @param height Height of a board.
-     * @param position Linear position of current field.
-     * @return Number of adjacent fields holding a bomb.
+     * @param bombs Bombs in a board.
      */
-    private int getNumberOfAdjacent(Set<Integer> linearPositions, int width, int height, int position){
-        int numberOfAdjacent = 0;
-        int y = position/width;
-        int x = position%width;
-
-        boolean isLeft = x > 0;
-        boolean isRight = x < width - 1;
-        boolean isTop = y > 0;
-        boolean isBottom = y < height;
-
-        if(isLeft && isTop && linearPositions.contains(position-width-1)) ++numberOfAdjacent;
-        if(isTop && linearPositions.contains(position-width)) ++numberOfAdjacent;
-        if(isTop && isRight && linearPositions.contains(position-width+1)) ++numberOfAdjacent;
-        if(isRight && linearPositions.contains(position+1)) ++numberOfAdjacent;
-        if(isBottom && isRight && linearPositions.contains(position+width+1)) ++numberOfAdjacent;
-        if(isBottom && linearPositions.contains(position+width)) ++numberOfAdjacent;
-        if(isBottom && isLeft && linearPositions.contains(position+width-1)) ++numberOfAdjacent;
-        if(isLeft && linearPositions.contains(position-1)) ++numberOfAdjacent;
+    private void initBoard(int width, int height, int bombs){
+        Board board = new Board(width, height);
+        if(bombs < 0 || bombs > board.size()){
+            throw new WrongBoardParametersException("Cannot create a board with given parameters.");
+        }
+        initBoard(board, bombs);
+        boardGenerated = false;
+    }
 
-        return numberOfAdjacent;
+    /**
+     * Initializes all variables related to a generated board.
+     * @param board Generated board.
+     * @param bombs Bombs in the board.
+     */
+    private void initBoard(Board board, int bombs){
+        this.board = board;
+        boardGenerated = true;
+        layoutFixed = false;
+        seed = new Random().nextLong();
+        this.width = board.getWidth();
+        this.height = board.getHeight();
+        this.bombs = bombs;
+        bombIndicator = bombs;
     }
 
     /**
-     * Returns a Field object.
+     * Returns a linear index of a field.
      * @param x X-coordinate.
      * @param y Y-coordinate.
-     * @return A field object.
+     * @return Linear index of a field in the board.
      */
-    private Field getField(int x, int y){
+    private int getIndex(int x, int y){
         if(areCoordinatorsValid(x, y)){
             throw new WrongBoardParametersException("Cannot access the field at the given position: " + x + ", " + y + ".");
         }
 
-        return board.get(y).get(x);
+        return board.index(x, y);
     }
 
     /**
@@ -316,10 +722,34 @@ public class Model {
         return x < 0 || x >= width || y < 0 || y >= height;
     }
 
+    /**
+     * Openings are indexed on boards with at most this many fields. The index
+     * is built at the first reverse, and on larger boards building it costs
+     * more than the flood fill it saves, so they are flooded field by field.
+     */
+    private static final int OPENING_INDEX_MAX_FIELDS = 1 << 16;
+
+    /**
+     * Visible values of fields which are not reversed.
+     */
+    public static final int FIELD_UNMARKED = -1, FIELD_MARKED = -2, FIELD_DETONATED = -3;
+
     /**
      * A board object.
      */
-    private ArrayList<ArrayList<Field>> board;
+    private Board board;
+    /**
+     * True if bombs were already placed on the board.
+     */
+    private boolean boardGenerated;
+    /**
+     * True if the first field was already reversed, so bombs cannot be moved anymore.
+     */
+    private boolean layoutFixed;
+    /**
+     * Seed used to generate the board and to clear the first reversed area.
+     */
+    private long seed;
     /**
      * Current game state.
      */
@@ -337,7 +767,52 @@ public class Model {
      */
     private int numberOfReversedFields;
     /**
-     * Timer object responsible for counting time.
+     * Bitset of fields already queued by the running reverseField call.
+     * Allocated on first use and left cleared between calls.
+     */
+    private long[] visited;
+    /**
+     * Work queue reused by every reverseField call.
+     */
+    private IntQueue queue;
+    /**
+     * Fields reversed by the running reverseField call.
+     */
+    private IntQueue reversedFields;
+    /**
+     * Openings of the board, indexed when the layout is fixed, or null.
+     */
+    private OpeningIndex openingIndex;
+    /**
+     * Metrics of the board, computed on demand, or null.
+     */
+    private BoardMetrics metrics;
+    /**
+     * Value of System.nanoTime() when the layout was fixed.
+     */
+    private long layoutNanos;
+    /**
+     * Time between the first reverse and solving the board in nanoseconds.
+     */
+    private long solveNanos;
+    /**
+     * Journal of actions or null if undo is not enabled.
+     */
+    private Journal journal;
+    /**
+     * True while an action is being redone, so it is not recorded again.
+     */
+    private boolean replaying;
+    /**
+     * Chooser of the layout of bombs or null.
+     */
+    private LayoutChooser layoutChooser;
+    /**
+     * True if the model never starts a timer thread.
+     */
+    private boolean headless;
+    /**
+     * Timer object responsible for counting time, created by start.
      */
     private Timer timer;
     /**
@@ -387,8 +862,50 @@ public class Model {
      * Possible difficulties of a game.
      */
     public enum Difficulty{
-        EASY,
-        MEDIUM,
-        HARD
+        EASY(9, 9, 10),
+        MEDIUM(16, 16, 40),
+        HARD(30, 16, 99),
+        CUSTOM(0, 0, 0);
+
+        /**
+         * Creates a difficulty.
+         * @param width Width of a board.
+         * @param height Height of a board.
+         * @param bombs Bombs in a board.
+         */
+        Difficulty(int width, int height, int bombs){
+            this.width = width;
+            this.height = height;
+            this.bombs = bombs;
+        }
+
+        /**
+         * Returns width of a board (0 for a custom difficulty).
+         * @return Width of a board.
+         */
+        public int getWidth(){
+            return width;
+        }
+
+        /**
+         * Returns height of a board (0 for a custom difficulty).
+         * @return Height of a board.
+         */
+        public int getHeight(){
+            return height;
+        }
+
+        /**
+         * Returns number of bombs in a board (0 for a custom difficulty).
+         * @return Number of bombs.
+         */
+        public int getBombs(){
+            return bombs;
+        }
+
+        /**
+         * Parameters of a board.
+         */
+        private int width, height, bombs;
     }
 }
@@ -0,0 +1,239 @@
+package minesweeper.model;
+
+/**
+ * Openings of a board: connected regions of fields without a bomb and
+ * without adjacent bombs, together with the numbered fields around them,
+ * which are reversed when any field of the region is. Regions are labelled
+ * once with union-find, joining every zero field with its zero neighbours
+ * already scanned, and fields of every opening are stored one after another,
+ * so an opening can be reversed and measured without searching it.
+ */
+class OpeningIndex {
+    /**
+     * Labels openings of a board with a fixed layout of bombs.
+     * @param board Board with bombs and values.
+     */
+    OpeningIndex(Board board){
+        width = board.getWidth();
+        height = board.getHeight();
+        int size = board.size();
+        labels = new int[size];
+        for(int y = 0, index = 0; y < height; ++y){
+            for(int x = 0; x < width; ++x, ++index){
+                if(!isZero(board, index)){
+                    labels[index] = NONE;
+                    continue;
+                }
+                labels[index] = index;
+                if(x > 0 && labels[index - 1] != NONE){
+                    union(index, index - 1);
+                }
+                if(y > 0){
+                    for(int above = index - width - (x > 0 ? 1 : 0); above <= index - width + (x < width - 1 ? 1 : 0); ++above){
+                        if(labels[above] != NONE){
+                            union(index, above);
+                        }
+                    }
+                }
+            }
+        }
+
+        // Parents always precede their children, so every parent holds the number of its root already.
+        for(int index = 0; index < size; ++index){
+            if(labels[index] != NONE){
+                labels[index] = labels[index] == index ? encode(openings++) : labels[labels[index]];
+            }
+        }
+
+        offsets = new int[openings + 1];
+        int[] found = new int[8];
+        for(int y = 0, index = 0; y < height; ++y){
+            for(int x = 0; x < width; ++x, ++index){
+                int count = collectRegions(board, x, y, index, found);
+                for(int i = 0; i < count; ++i){
+                    ++offsets[found[i] + 1];
+                }
+            }
+        }
+        for(int region = 0; region < openings; ++region){
+            offsets[region + 1] += offsets[region];
+        }
+        fields = new int[offsets[openings]];
+        int[] next = new int[openings];
+        System.arraycopy(offsets, 0, next, 0, openings);
+        for(int y = 0, index = 0; y < height; ++y){
+            for(int x = 0; x < width; ++x, ++index){
+                int count = collectRegions(board, x, y, index, found);
+                for(int i = 0; i < count; ++i){
+                    fields[next[found[i]]++] = index;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the opening a field opens when reversed.
+     * @param index Linear index of a field.
+     * @return Number of the opening or -1 if the field has adjacent bombs or contains one.
+     */
+    int getOpening(int index){
+        return labels[index] == NONE ? -1 : decode(labels[index]);
+    }
+
+    /**
+     * Returns number of openings.
+     * @return Number of openings.
+     */
+    int getOpenings(){
+        return openings;
+    }
+
+    /**
+     * Returns number of fields of an opening, including its numbered border.
+     * @param opening Number of the opening.
+     * @return Number of fields.
+     */
+    int getSize(int opening){
+        return offsets[opening + 1] - offsets[opening];
+    }
+
+    /**
+     * Returns a field of an opening.
+     * @param opening Number of the opening.
+     * @param i Index of the field within the opening, from 0 to getSize - 1.
+     * @return Linear index of the field.
+     */
+    int getField(int opening, int i){
+        return fields[offsets[opening] + i];
+    }
+
+    /**
+     * Returns approximate memory used by the index.
+     * @return Number of bytes.
+     */
+    long getMemoryUsage(){
+        return 4L*(labels.length + offsets.length + fields.length);
+    }
+
+    /**
+     * Finds distinct openings containing a field: its own one if it is a zero
+     * field, or the openings of zero neighbours if it is a numbered field.
+     * Must be called after labels are numbered.
+     * @param board Board with bombs and values.
+     * @param x X-coordinate of the field.
+     * @param y Y-coordinate of the field.
+     * @param index Linear index of the field.
+     * @param found Receives numbers of the openings.
+     * @return Number of found openings.
+     */
+    private int collectRegions(Board board, int x, int y, int index, int[] found){
+        if(labels[index] != NONE){
+            found[0] = decode(labels[index]);
+            return 1;
+        }
+        if(board.containsBomb(index)){
+            return 0;
+        }
+        int count = 0;
+        for(int i = Math.max(y - 1, 0); i <= Math.min(y + 1, height - 1); ++i){
+            for(int j = Math.max(x - 1, 0); j <= Math.min(x + 1, width - 1); ++j){
+                int label = labels[i*width + j];
+                if(label == NONE){
+                    continue;
+                }
+                int region = decode(label);
+                boolean duplicate = false;
+                for(int k = 0; k < count; ++k){
+                    duplicate |= found[k] == region;
+                }
+                if(!duplicate){
+                    found[count++] = region;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Joins regions of two fields, the smaller root becomes the root of both.
+     * @param a Linear index of a field.
+     * @param b Linear index of another field.
+     */
+    private void union(int a, int b){
+        int rootA = find(a), rootB = find(b);
+        if(rootA < rootB){
+            labels[rootB] = rootA;
+        }
+        else if(rootB < rootA){
+            labels[rootA] = rootB;
+        }
+    }
+
+    /**
+     * Finds the root of the region of a field, halving the path on the way.
+     * @param index Linear index of a field.
+     * @return Linear index of the root.
+     */
+    private int find(int index){
+        while(labels[index] != index){
+            labels[index] = labels[labels[index]];
+            index = labels[index];
+        }
+        return index;
+    }
+
+    /**
+     * Returns true if a field contains no bomb and has no adjacent bombs.
+     * @param board Board with bombs and values.
+     * @param index Linear index of a field.
+     * @return True if the field is a zero field.
+     */
+    private static boolean isZero(Board board, int index){
+        return !board.containsBomb(index) && board.getValue(index) == 0;
+    }
+
+    /**
+     * Encodes a number of an opening as a label, distinct from field indices and NONE.
+     * @param opening Number of the opening.
+     * @return The label.
+     */
+    private static int encode(int opening){
+        return -2 - opening;
+    }
+
+    /**
+     * Decodes a number of an opening from a label.
+     * @param label The label.
+     * @return Number of the opening.
+     */
+    private static int decode(int label){
+        return -2 - label;
+    }
+
+    /**
+     * Label of fields which are not zero fields.
+     */
+    private static final int NONE = -1;
+
+    /**
+     * Dimensions of the board.
+     */
+    private int width, height;
+    /**
+     * For every field the encoded number of its opening or NONE.
+     * While labelling, parents of zero fields in the union-find forest.
+     */
+    private int[] labels;
+    /**
+     * Number of openings.
+     */
+    private int openings;
+    /**
+     * Start of fields of every opening in fields, with the total at the end.
+     */
+    private int[] offsets;
+    /**
+     * Fields of all openings, opening after opening.
+     */
+    private int[] fields;
+}
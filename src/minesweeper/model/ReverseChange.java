@@ -6,56 +6,142 @@ import java.util.ArrayList;
 
 /**
  * Class used to contain information about a reverse operation.
+ * Positions of reversed fields are kept as linear indices
+ * (y - originY)*width + (x - originX) with values stored in a parallel byte array.
  */
 public class ReverseChange {
     /**
-     * Initializes an object from given game state.
+     * Initializes an object describing that nothing was reversed.
+     */
+    ReverseChange(){
+        this(false, null, 0, 0, 0, EMPTY_POSITIONS, EMPTY_VALUES);
+    }
+
+    /**
+     * Initializes an object describing a detonation of a bomb.
      * @param gameState Current game state.
+     * @param detonatedX X-coordinate of the detonated bomb.
+     * @param detonatedY Y-coordinate of the detonated bomb.
      */
-    ReverseChange(GameState gameState){
-        this.gameStateChanged = true;
-        this.gameState = gameState;
+    ReverseChange(GameState gameState, int detonatedX, int detonatedY){
+        this(true, gameState, 0, 0, 0, EMPTY_POSITIONS, EMPTY_VALUES);
+        this.detonatedX = detonatedX;
+        this.detonatedY = detonatedY;
     }
 
     /**
      * Initializes an object from given positions and values of reversed fields
      * providing that a game state did not change.
-     * @param positions Positions of reversed fields.
+     * @param width Width of a board, used to decode positions.
+     * @param positions Linear positions of reversed fields.
      * @param values Values of reversed fields.
      */
-    ReverseChange(ArrayList<Pair<Integer, Integer>> positions, ArrayList<Integer> values){
-        this.gameStateChanged = false;
-        this.positions = positions;
-        this.values = values;
+    ReverseChange(int width, int[] positions, byte[] values){
+        this(false, null, width, 0, 0, positions, values);
     }
 
     /**
      * Initializes an object from given positions and values of reversed fields.
      * @param gameState New game state.
-     * @param positions Positions of reversed fields.
+     * @param width Width of a board, used to decode positions.
+     * @param positions Linear positions of reversed fields.
      * @param values Values of reversed fields.
      */
-    ReverseChange(GameState gameState, ArrayList<Pair<Integer, Integer>> positions, ArrayList<Integer> values){
-        this.gameStateChanged = true;
+    ReverseChange(GameState gameState, int width, int[] positions, byte[] values){
+        this(true, gameState, width, 0, 0, positions, values);
+    }
+
+    /**
+     * Initializes an object from positions relative to a given origin.
+     * @param gameStateChanged True if game state changed.
+     * @param gameState Current game state.
+     * @param width Width of the area covered by positions.
+     * @param originX X-coordinate of the top left field of the area.
+     * @param originY Y-coordinate of the top left field of the area.
+     * @param positions Linear positions of reversed fields within the area.
+     * @param values Values of reversed fields.
+     */
+    ReverseChange(boolean gameStateChanged, GameState gameState, int width, int originX, int originY,
+                  int[] positions, byte[] values){
+        this.gameStateChanged = gameStateChanged;
         this.gameState = gameState;
+        this.width = width;
+        this.originX = originX;
+        this.originY = originY;
         this.positions = positions;
         this.values = values;
     }
 
+    /**
+     * Passes every reversed field to a consumer, without creating any objects.
+     * @param consumer The consumer.
+     */
+    public void forEach(FieldConsumer consumer){
+        for(int i = 0; i < positions.length; ++i){
+            int position = positions[i];
+            consumer.accept(originX + position % width, originY + position / width, values[i]);
+        }
+    }
+
+    /**
+     * Returns number of reversed fields.
+     * @return Number of reversed fields.
+     */
+    public int size(){
+        return positions.length;
+    }
+
+    /**
+     * Returns X-coordinate of a reversed field.
+     * @param i Index of a reversed field.
+     * @return X-coordinate.
+     */
+    public int getX(int i){
+        return originX + positions[i] % width;
+    }
+
+    /**
+     * Returns Y-coordinate of a reversed field.
+     * @param i Index of a reversed field.
+     * @return Y-coordinate.
+     */
+    public int getY(int i){
+        return originY + positions[i] / width;
+    }
+
+    /**
+     * Returns value of a reversed field.
+     * @param i Index of a reversed field.
+     * @return Value of the field.
+     */
+    public int getValue(int i){
+        return values[i];
+    }
+
     /**
      * Returns positions of reversed fields.
+     * The list is built on every call, prefer forEach.
      * @return Positions of reversed fields.
      */
     public ArrayList<Pair<Integer, Integer>> getPositions() {
-        return positions;
+        ArrayList<Pair<Integer, Integer>> list = new ArrayList<>(positions.length);
+        for(int i = 0; i < positions.length; ++i){
+            list.add(new Pair<>(getX(i), getY(i)));
+        }
+        return list;
     }
 
     /**
      * Returns values of reversed fields.
+     * The list is built on every call, prefer forEach.
      * @return Values of reversed fields.
      */
     public ArrayList<Integer> getValues() {
-        return values;
+        ArrayList<Integer> list = new ArrayList<>(values.length);
+        for(byte value : values){
+            list.add((int)value);
+        }
+        return list;
     }
 
     /**
@@ -76,13 +162,45 @@ public class ReverseChange {
     }
 
     /**
-     * Positions of reversed fields.
+     * Returns X-coordinate of the detonated bomb (set only when the game state
+     * changed to BOMB_DETONATED).
+     * @return X-coordinate of the detonated bomb.
+     */
+    public int getDetonatedX() {
+        return detonatedX;
+    }
+
+    /**
+     * Returns Y-coordinate of the detonated bomb (set only when the game state
+     * changed to BOMB_DETONATED).
+     * @return Y-coordinate of the detonated bomb.
      */
-    private ArrayList<Pair<Integer, Integer>> positions;
+    public int getDetonatedY() {
+        return detonatedY;
+    }
+
+    /**
+     * Shared arrays of a change without reversed fields.
+     */
+    private static final int[] EMPTY_POSITIONS = new int[0];
+    private static final byte[] EMPTY_VALUES = new byte[0];
+
+    /**
+     * Linear positions of reversed fields.
+     */
+    private int[] positions;
     /**
      * Values of reversed fields.
      */
-    private ArrayList<Integer> values;
+    private byte[] values;
+    /**
+     * Width of the area covered by positions.
+     */
+    private int width;
+    /**
+     * Top left field of the area covered by positions.
+     */
+    private int originX, originY;
     /**
      * True if game state changed.
      */
@@ -91,4 +209,21 @@ public class ReverseChange {
      * Current game state (not always set and valid!).
      */
     private GameState gameState;
+    /**
+     * Position of the detonated bomb.
+     */
+    private int detonatedX, detonatedY;
+
+    /**
+     * Receives reversed fields one by one.
+     */
+    public interface FieldConsumer {
+        /**
+         * Accepts a reversed field.
+         * @param x X-coordinate of the field.
+         * @param y Y-coordinate of the field.
+         * @param value Value of the field.
+         */
+        void accept(int x, int y, int value);
+    }
 }
@@ -0,0 +1,177 @@
+package minesweeper.simulator;
+
+import minesweeper.model.GameState;
+import minesweeper.model.MarkChange;
+import minesweeper.model.Model;
+import minesweeper.model.ReverseChange;
+
+/**
+ * A headless game played by a strategy. Operations are passed to the model,
+ * while sizes of uncovered areas are collected for the statistics.
+ */
+public class SimulatedGame {
+    /**
+     * Creates a game.
+     * @param model Headless model of the game.
+     * @param seed Seed the board was generated from.
+     */
+    SimulatedGame(Model model, long seed){
+        this.model = model;
+        this.seed = seed;
+    }
+
+    /**
+     * Reverses a field.
+     * @param x X-coordinate of a field.
+     * @param y Y-coordinate of a field.
+     * @return A ReverseChange object.
+     */
+    public ReverseChange reverse(int x, int y){
+        return count(model.reverse(x, y));
+    }
+
+    /**
+     * Reverses all not marked neighbours of a reversed field.
+     * @param x X-coordinate of a field.
+     * @param y Y-coordinate of a field.
+     * @return A ReverseChange object.
+     */
+    public ReverseChange chord(int x, int y){
+        return count(model.chord(x, y));
+    }
+
+    /**
+     * Marks a field.
+     * @param x X-coordinate of a field.
+     * @param y Y-coordinate of a field.
+     * @return MarkChange object.
+     */
+    public MarkChange mark(int x, int y){
+        return model.mark(x, y);
+    }
+
+    /**
+     * Returns true if the game was won or lost.
+     * @return True if the game is over.
+     */
+    public boolean isOver(){
+        GameState state = model.getGameState();
+        return state == GameState.BOMB_DETONATED || state == GameState.SOLVED;
+    }
+
+    /**
+     * Returns true if the game was won.
+     * @return True if all safe fields are reversed.
+     */
+    public boolean isWon(){
+        return model.getGameState() == GameState.SOLVED;
+    }
+
+    /**
+     * Returns width of a board.
+     * @return Width of a board.
+     */
+    public int getWidth(){
+        return model.getWidth();
+    }
+
+    /**
+     * Returns height of a board.
+     * @return Height of a board.
+     */
+    public int getHeight(){
+        return model.getHeight();
+    }
+
+    /**
+     * Returns number of bombs in a board.
+     * @return Number of bombs.
+     */
+    public int getBombs(){
+        return model.getBombs();
+    }
+
+    /**
+     * Returns seed the board was generated from. Strategies may use it
+     * to make their random choices reproducible.
+     * @return The seed.
+     */
+    public long getSeed(){
+        return seed;
+    }
+
+    /**
+     * Returns number of operations which reversed at least one field.
+     * @return Number of operations.
+     */
+    int getReverses(){
+        return reverses;
+    }
+
+    /**
+     * Returns number of operations which reversed more than one field.
+     * @return Number of cascades.
+     */
+    int getCascades(){
+        return cascades;
+    }
+
+    /**
+     * Returns number of fields reversed by cascades.
+     * @return Number of fields.
+     */
+    long getCascadeFields(){
+        return cascadeFields;
+    }
+
+    /**
+     * Returns the largest number of fields reversed by a single operation.
+     * @return Number of fields.
+     */
+    int getLargestCascade(){
+        return largestCascade;
+    }
+
+    /**
+     * Updates statistics with a result of an operation.
+     * @param reverseChange Result of the operation.
+     * @return The same object.
+     */
+    private ReverseChange count(ReverseChange reverseChange){
+        int size = reverseChange.size();
+        if(size > 0){
+            ++reverses;
+        }
+        if(size > 1){
+            ++cascades;
+            cascadeFields += size;
+        }
+        largestCascade = Math.max(largestCascade, size);
+        return reverseChange;
+    }
+
+    /**
+     * Model of the game.
+     */
+    private Model model;
+    /**
+     * Seed the board was generated from.
+     */
+    private long seed;
+    /**
+     * Number of operations which reversed at least one field.
+     */
+    private int reverses;
+    /**
+     * Number of operations which reversed more than one field.
+     */
+    private int cascades;
+    /**
+     * Number of fields reversed by cascades.
+     */
+    private long cascadeFields;
+    /**
+     * Largest number of fields reversed by a single operation.
+     */
+    private int largestCascade;
+}
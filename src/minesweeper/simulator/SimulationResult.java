@@ -0,0 +1,167 @@
+package minesweeper.simulator;
+
+import java.util.Locale;
+
+/**
+ * Statistics of simulated games. Every worker thread collects its own
+ * result, which are merged when the simulation ends.
+ */
+public class SimulationResult {
+    /**
+     * Creates an empty result.
+     */
+    SimulationResult(){
+    }
+
+    /**
+     * Adds a finished game.
+     * @param game The game.
+     * @param nanos Time the game took in nanoseconds.
+     */
+    void add(SimulatedGame game, long nanos){
+        ++games;
+        if(game.isWon()){
+            ++wins;
+        }
+        gameNanos += nanos;
+        reverses += game.getReverses();
+        cascades += game.getCascades();
+        cascadeFields += game.getCascadeFields();
+        largestCascade = Math.max(largestCascade, game.getLargestCascade());
+    }
+
+    /**
+     * Adds all games of another result.
+     * @param other The other result.
+     */
+    void addAll(SimulationResult other){
+        games += other.games;
+        wins += other.wins;
+        gameNanos += other.gameNanos;
+        reverses += other.reverses;
+        cascades += other.cascades;
+        cascadeFields += other.cascadeFields;
+        largestCascade = Math.max(largestCascade, other.largestCascade);
+    }
+
+    /**
+     * Sets the wall-clock time of the whole simulation.
+     * @param nanos Time in nanoseconds.
+     */
+    void setElapsedNanos(long nanos){
+        elapsedNanos = nanos;
+    }
+
+    /**
+     * Returns number of played games.
+     * @return Number of games.
+     */
+    public long getGames(){
+        return games;
+    }
+
+    /**
+     * Returns number of won games.
+     * @return Number of wins.
+     */
+    public long getWins(){
+        return wins;
+    }
+
+    /**
+     * Returns part of games which were won.
+     * @return Win rate from 0 to 1.
+     */
+    public double getWinRate(){
+        return games == 0 ? 0 : (double)wins / games;
+    }
+
+    /**
+     * Returns number of games finished per second of wall-clock time.
+     * @return Games per second.
+     */
+    public double getGamesPerSecond(){
+        return elapsedNanos == 0 ? 0 : games*1e9 / elapsedNanos;
+    }
+
+    /**
+     * Returns average time of a single game, measured on the thread playing it.
+     * @return Average time in milliseconds.
+     */
+    public double getAverageTime(){
+        return games == 0 ? 0 : gameNanos / 1e6 / games;
+    }
+
+    /**
+     * Returns average number of operations which reversed some fields in a game.
+     * @return Average number of reverses.
+     */
+    public double getAverageReverses(){
+        return games == 0 ? 0 : (double)reverses / games;
+    }
+
+    /**
+     * Returns average number of operations which reversed more than one field in a game.
+     * @return Average number of cascades.
+     */
+    public double getAverageCascades(){
+        return games == 0 ? 0 : (double)cascades / games;
+    }
+
+    /**
+     * Returns average number of fields reversed by a single cascade.
+     * @return Average cascade size.
+     */
+    public double getAverageCascadeSize(){
+        return cascades == 0 ? 0 : (double)cascadeFields / cascades;
+    }
+
+    /**
+     * Returns the largest number of fields reversed by a single operation.
+     * @return Largest cascade size.
+     */
+    public int getLargestCascade(){
+        return largestCascade;
+    }
+
+    /**
+     * Returns a report of all statistics.
+     * @return Report in a single line.
+     */
+    @Override
+    public String toString(){
+        return String.format(Locale.ROOT, "games %d, %.1f games/s, win rate %.4f, average time %.3f ms, " +
+                "reverses/game %.2f, cascades/game %.2f, average cascade %.2f, largest cascade %d",
+                games, getGamesPerSecond(), getWinRate(), getAverageTime(), getAverageReverses(),
+                getAverageCascades(), getAverageCascadeSize(), largestCascade);
+    }
+
+    /**
+     * Number of played and won games.
+     */
+    private long games, wins;
+    /**
+     * Summed time of all games in nanoseconds.
+     */
+    private long gameNanos;
+    /**
+     * Wall-clock time of the simulation in nanoseconds.
+     */
+    private long elapsedNanos;
+    /**
+     * Number of operations which reversed some fields.
+     */
+    private long reverses;
+    /**
+     * Number of operations which reversed more than one field.
+     */
+    private long cascades;
+    /**
+     * Number of fields reversed by cascades.
+     */
+    private long cascadeFields;
+    /**
+     * Largest number of fields reversed by a single operation.
+     */
+    private int largestCascade;
+}
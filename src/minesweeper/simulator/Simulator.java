@@ -0,0 +1,125 @@
+package minesweeper.simulator;
+
+import minesweeper.model.Model;
+import minesweeper.model.exceptions.WrongBoardParametersException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Plays many games without a user interface and collects statistics.
+ * Games are spread over worker threads, each with its own strategy object,
+ * which take game numbers from a shared counter until all are played.
+ * Models are headless, so no timer thread is started for a game.
+ * The board of every game is generated from a seed derived from the seed
+ * of the simulation and the number of the game, so results do not depend
+ * on the number of threads.
+ */
+public class Simulator {
+    /**
+     * Creates a simulator.
+     * @param width Width of a board.
+     * @param height Height of a board.
+     * @param bombs Bombs in a board.
+     * @param strategies Creates a strategy for every worker thread.
+     * @param threads Number of worker threads.
+     */
+    public Simulator(int width, int height, int bombs, Supplier<Strategy> strategies, int threads){
+        if(width <= 0 || height <= 0 || bombs < 0 || bombs >= (long)width*height || threads <= 0){
+            throw new WrongBoardParametersException("Cannot simulate games with given parameters.");
+        }
+        this.width = width;
+        this.height = height;
+        this.bombs = bombs;
+        this.strategies = strategies;
+        this.threads = threads;
+    }
+
+    /**
+     * Plays games and waits until all of them are finished.
+     * @param games Number of games to play.
+     * @param seed Seed of the whole simulation.
+     * @return Statistics of all games.
+     */
+    public SimulationResult run(long games, long seed){
+        AtomicLong next = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "Simulator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long start = System.nanoTime();
+        List<Future<SimulationResult>> futures = new ArrayList<>(threads);
+        for(int i = 0; i < threads; ++i){
+            futures.add(executor.submit(() -> play(next, games, seed)));
+        }
+
+        SimulationResult result = new SimulationResult();
+        try{
+            for(Future<SimulationResult> future : futures){
+                result.addAll(future.get());
+            }
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+        catch(ExecutionException e){
+            throw new IllegalStateException("A simulated game failed.", e.getCause());
+        }
+        finally{
+            executor.shutdownNow();
+        }
+        result.setElapsedNanos(System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Plays games on the current thread until all games are taken.
+     * @param next Number of the next game to play.
+     * @param games Number of games to play.
+     * @param seed Seed of the whole simulation.
+     * @return Statistics of games played by this thread.
+     */
+    private SimulationResult play(AtomicLong next, long games, long seed){
+        Strategy strategy = strategies.get();
+        SimulationResult result = new SimulationResult();
+        for(long game = next.getAndIncrement(); game < games; game = next.getAndIncrement()){
+            if(Thread.currentThread().isInterrupted()){
+                break;
+            }
+            long gameSeed = new SplittableRandom(seed + game*SEED_STEP).nextLong();
+            Model model = Model.createHeadless(width, height, bombs, gameSeed);
+            SimulatedGame simulatedGame = new SimulatedGame(model, gameSeed);
+            long start = System.nanoTime();
+            strategy.play(simulatedGame);
+            result.add(simulatedGame, System.nanoTime() - start);
+            model.dispose();
+        }
+        return result;
+    }
+
+    /**
+     * Distance between seeds of consecutive games, mixed by SplittableRandom.
+     */
+    private static final long SEED_STEP = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Variables describing properties of a board.
+     */
+    private int width, height, bombs;
+    /**
+     * Creates a strategy for every worker thread.
+     */
+    private Supplier<Strategy> strategies;
+    /**
+     * Number of worker threads.
+     */
+    private int threads;
+}
@@ -0,0 +1,74 @@
+package minesweeper.simulator;
+
+import minesweeper.solver.MonteCarloEstimator;
+import minesweeper.solver.ProbabilityEngine;
+import minesweeper.solver.Solver;
+
+/**
+ * Opens the middle of the board, then reverses every field the solver
+ * proves safe. When nothing is proven, it reverses the field with the
+ * lowest mine probability, estimated by sampling if some part of the
+ * frontier is too large to count exactly. Sampling runs on the thread of
+ * the game for a fixed number of rounds, so a game depends only on its seed.
+ */
+public class SolverStrategy implements Strategy {
+    @Override
+    public void play(SimulatedGame game){
+        int width = game.getWidth(), height = game.getHeight();
+        Solver solver = new Solver(width, height, game.getBombs());
+        ProbabilityEngine engine = null;
+        solver.apply(game.reverse(width / 2, height / 2));
+        while(!game.isOver()){
+            solver.solve();
+            int index = solver.nextSafeCell();
+            if(index < 0){
+                if(engine == null){
+                    engine = new ProbabilityEngine(solver);
+                }
+                else{
+                    engine.update();
+                }
+                index = guess(solver, engine, game.getSeed());
+            }
+            solver.apply(game.reverse(index % width, index / width));
+        }
+    }
+
+    /**
+     * Finds an unknown field with the lowest mine probability.
+     * @param solver Solver holding the visible board.
+     * @param engine Engine up to date with the solver.
+     * @param seed Seed of sampling.
+     * @return Linear index of the field.
+     */
+    private int guess(Solver solver, ProbabilityEngine engine, long seed){
+        if(!engine.isExact()){
+            new MonteCarloEstimator(engine, seed).estimateRounds(ESTIMATE_ROUNDS, ESTIMATE_ERROR);
+        }
+        int width = solver.getWidth();
+        int best = -1;
+        double lowest = Double.POSITIVE_INFINITY;
+        for(int y = 0; y < solver.getHeight(); ++y){
+            for(int x = 0; x < width; ++x){
+                if(solver.getCell(x, y) != Solver.UNKNOWN){
+                    continue;
+                }
+                double probability = engine.getProbability(x, y);
+                if(best < 0 || probability < lowest){
+                    best = y*width + x;
+                    lowest = probability;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Largest number of sampling rounds of a single estimation.
+     */
+    private static final int ESTIMATE_ROUNDS = 4;
+    /**
+     * Error target of a single estimation.
+     */
+    private static final double ESTIMATE_ERROR = 0.02;
+}
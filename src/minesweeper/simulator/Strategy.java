@@ -0,0 +1,14 @@
+package minesweeper.simulator;
+
+/**
+ * A way of playing a game, used by the simulator. Every worker thread of
+ * the simulator gets its own strategy object, so implementations do not
+ * need to be thread-safe.
+ */
+public interface Strategy {
+    /**
+     * Plays a game until it is won or lost.
+     * @param game Game to play.
+     */
+    void play(SimulatedGame game);
+}
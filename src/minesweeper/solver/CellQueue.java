@@ -0,0 +1,84 @@
+package minesweeper.solver;
+
+import java.util.Arrays;
+
+/**
+ * Growable circular FIFO queue of linear cell indices.
+ * Taken elements free their space, so a queue which is filled and
+ * emptied many times never grows beyond the largest number of
+ * elements held at once.
+ */
+class CellQueue {
+    /**
+     * Creates an empty queue.
+     */
+    CellQueue(){
+        elements = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Adds an element at the end of the queue.
+     * @param element Element to add.
+     */
+    void add(int element){
+        if(size == elements.length){
+            int[] grown = Arrays.copyOf(elements, 2*elements.length);
+            System.arraycopy(elements, 0, grown, elements.length, head);
+            elements = grown;
+        }
+        elements[(head + size++) & (elements.length - 1)] = element;
+    }
+
+    /**
+     * Takes the first element of the queue.
+     * @return Taken element.
+     */
+    int take(){
+        int element = elements[head];
+        head = (head + 1) & (elements.length - 1);
+        --size;
+        return element;
+    }
+
+    /**
+     * Returns true if the queue is empty.
+     * @return True if there is nothing to take.
+     */
+    boolean isEmpty(){
+        return size == 0;
+    }
+
+    /**
+     * Returns number of elements in the queue.
+     * @return Number of elements.
+     */
+    int size(){
+        return size;
+    }
+
+    /**
+     * Removes all elements.
+     */
+    void clear(){
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * Initial size of the internal array, a power of two.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Queue elements.
+     */
+    private int[] elements;
+    /**
+     * Position of the first element.
+     */
+    private int head;
+    /**
+     * Number of elements.
+     */
+    private int size;
+}
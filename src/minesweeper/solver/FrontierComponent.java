@@ -0,0 +1,394 @@
+package minesweeper.solver;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.SplittableRandom;
+
+/**
+ * Connected group of unknown fields adjacent to reversed numbers, together
+ * with the numbers constraining them. Fields of different components never
+ * share a number, so the layouts of their mines are independent apart from
+ * the total number of bombs.
+ */
+class FrontierComponent {
+    /**
+     * Creates a component without fields. They are set with build.
+     */
+    FrontierComponent(){
+        cells = new int[0];
+    }
+
+    /**
+     * Collects numbers constraining given fields.
+     * @param solver Solver holding the visible board.
+     * @param cells Linear indices of fields, ordered so that neighbouring fields are close.
+     */
+    void build(Solver solver, int[] cells){
+        this.cells = cells;
+        int width = solver.getWidth(), height = solver.getHeight();
+        HashMap<Integer, Integer> constraintIds = new HashMap<>();
+        int[] targetsBuffer = new int[8*cells.length];
+        cellConstraints = new int[cells.length][];
+        int[] buffer = new int[8];
+        for(int i = 0; i < cells.length; ++i){
+            int x = cells[i] % width, y = cells[i] / width;
+            int count = 0;
+            for(int ny = Math.max(y - 1, 0); ny <= Math.min(y + 1, height - 1); ++ny){
+                for(int nx = Math.max(x - 1, 0); nx <= Math.min(x + 1, width - 1); ++nx){
+                    int neighbour = ny*width + nx;
+                    if(solver.getCell(neighbour) < 0){
+                        continue;
+                    }
+                    Integer id = constraintIds.get(neighbour);
+                    if(id == null){
+                        id = constraintIds.size();
+                        constraintIds.put(neighbour, id);
+                        targetsBuffer[id] = solver.getRemaining(neighbour);
+                    }
+                    buffer[count++] = id;
+                }
+            }
+            cellConstraints[i] = Arrays.copyOf(buffer, count);
+        }
+        targets = Arrays.copyOf(targetsBuffer, constraintIds.size());
+    }
+
+    /**
+     * Counts all layouts of mines satisfying the numbers, separately for every
+     * number of mines, together with how many of them contain a mine in every
+     * field. Gives up when the search visits more than a given number of nodes.
+     * @param nodeLimit Maximal number of visited search nodes.
+     * @return True if the counting finished.
+     */
+    boolean enumerate(long nodeLimit){
+        if(cells.length > MAX_EXACT_CELLS){
+            return false;
+        }
+
+        SampleAccumulator accumulator = new SampleAccumulator(cells.length);
+        left = countFields();
+        sums = new int[targets.length];
+        assignment = new boolean[cells.length];
+        nodes = 0;
+        this.nodeLimit = nodeLimit;
+        search(0, 0, accumulator);
+        sums = null;
+        left = null;
+        assignment = null;
+        if(nodes > nodeLimit){
+            return false;
+        }
+        setCounts(accumulator, true);
+        return true;
+    }
+
+    /**
+     * Draws a single layout by assigning fields one by one. A field which can
+     * take both values becomes a mine with a probability guessed from the
+     * mines left around its numbers, and the weight of the layout is divided by
+     * the probability of every choice. Summed weights then estimate numbers
+     * of layouts without bias (Knuth's estimator with importance sampling).
+     * @param random Source of randomness.
+     * @param accumulator Accumulator of the drawn layout.
+     */
+    void probe(SplittableRandom random, SampleAccumulator accumulator){
+        int[] left = countFields();
+        int[] sums = new int[targets.length];
+        boolean[] assignment = new boolean[cells.length];
+        double logWeight = 0;
+        int mines = 0;
+        for(int position = 0; position < cells.length; ++position){
+            int[] constraints = cellConstraints[position];
+            boolean canBeEmpty = true, canBeMine = true;
+            double density = 0;
+            for(int constraint : constraints){
+                int sum = sums[constraint], fields = left[constraint] - 1, target = targets[constraint];
+                canBeEmpty &= sum + fields >= target;
+                canBeMine &= sum + 1 <= target;
+                density += (double)(target - sum) / (fields + 1);
+            }
+
+            boolean mine;
+            if(canBeEmpty && canBeMine){
+                double probability = Math.min(Math.max(density / constraints.length, MIN_PROBABILITY),
+                        1 - MIN_PROBABILITY);
+                mine = random.nextDouble() < probability;
+                logWeight -= Math.log(mine ? probability : 1 - probability);
+            }
+            else if(canBeEmpty || canBeMine){
+                mine = canBeMine;
+            }
+            else{
+                accumulator.addFailure();
+                return;
+            }
+
+            assignment[position] = mine;
+            for(int constraint : constraints){
+                --left[constraint];
+                if(mine){
+                    ++sums[constraint];
+                }
+            }
+            if(mine){
+                ++mines;
+            }
+        }
+        accumulator.add(mines, logWeight, assignment);
+    }
+
+    /**
+     * Creates a component with the same fields and numbers and with counts
+     * taken from an accumulator.
+     * @param accumulator Accumulator with estimated counts.
+     * @return The new component.
+     */
+    FrontierComponent withEstimate(SampleAccumulator accumulator){
+        FrontierComponent component = new FrontierComponent();
+        component.cells = cells;
+        component.cellConstraints = cellConstraints;
+        component.targets = targets;
+        component.setCounts(accumulator, false);
+        return component;
+    }
+
+    /**
+     * Takes counts from an accumulator, scaled so that the largest is 1.
+     * @param accumulator Accumulator of layouts.
+     * @param exact True if the accumulator holds all layouts.
+     */
+    void setCounts(SampleAccumulator accumulator, boolean exact){
+        double[] accumulated = accumulator.getCounts();
+        double max = 0;
+        for(double count : accumulated){
+            max = Math.max(max, count);
+        }
+        double factor = max > 0 ? 1 / max : 0;
+        counts = new double[accumulated.length];
+        for(int k = 0; k < counts.length; ++k){
+            counts[k] = factor*accumulated[k];
+        }
+        cellCounts = new double[cells.length][];
+        for(int i = 0; i < cells.length; ++i){
+            double[] row = accumulator.getCellCounts(i).clone();
+            for(int k = 0; k < row.length; ++k){
+                row[k] *= factor;
+            }
+            cellCounts[i] = row;
+        }
+        cellCountsOffset = accumulator.getOffset();
+        this.exact = exact;
+        counted = true;
+    }
+
+    /**
+     * Returns fields of the component.
+     * @return Linear indices of fields.
+     */
+    int[] getCells(){
+        return cells;
+    }
+
+    /**
+     * Returns true if all layouts were counted.
+     * @return True if counts are exact.
+     */
+    boolean isExact(){
+        return exact;
+    }
+
+    /**
+     * Returns true if layouts were counted or estimated.
+     * @return True if counts are available.
+     */
+    boolean isCounted(){
+        return counted;
+    }
+
+    /**
+     * Returns the number of layouts for every number of mines,
+     * scaled so that the largest is 1.
+     * @return Scaled counts of layouts.
+     */
+    double[] getCounts(){
+        return counts;
+    }
+
+    /**
+     * Returns the number of layouts with a mine in a field for every
+     * number of mines from getCellCountsOffset, scaled like getCounts.
+     * @param i Index of a field within the component.
+     * @return Scaled counts of layouts.
+     */
+    double[] getCellCounts(int i){
+        return cellCounts[i];
+    }
+
+    /**
+     * Returns the smallest number of mines covered by getCellCounts.
+     * @return The offset.
+     */
+    int getCellCountsOffset(){
+        return cellCountsOffset;
+    }
+
+    /**
+     * Returns mine probability of a field.
+     * @param i Index of a field within the component.
+     * @return Mine probability.
+     */
+    double getProbability(int i){
+        return probabilities[i];
+    }
+
+    /**
+     * Sets mine probabilities of all fields.
+     * @param probabilities Mine probability of every field.
+     */
+    void setProbabilities(double[] probabilities){
+        this.probabilities = probabilities;
+    }
+
+    /**
+     * Returns half-width of the 95% confidence interval of the probability of a field.
+     * @param i Index of a field within the component.
+     * @return The half-width, 0 if probabilities are exact.
+     */
+    double getError(int i){
+        return errors == null ? 0 : errors[i];
+    }
+
+    /**
+     * Sets half-widths of confidence intervals of all fields.
+     * @param errors Half-width for every field or null if probabilities are exact.
+     */
+    void setErrors(double[] errors){
+        this.errors = errors;
+    }
+
+    /**
+     * Assigns fields one by one, pruning as soon as some number cannot be satisfied.
+     * @param position Index of the next field to assign.
+     * @param mines Mines assigned so far.
+     * @param accumulator Accumulator of found layouts.
+     */
+    private void search(int position, int mines, SampleAccumulator accumulator){
+        if(++nodes > nodeLimit){
+            return;
+        }
+        if(position == cells.length){
+            accumulator.add(mines, 0, assignment);
+            return;
+        }
+
+        int[] constraints = cellConstraints[position];
+        for(int value = 0; value <= 1; ++value){
+            boolean valid = true;
+            for(int constraint : constraints){
+                sums[constraint] += value;
+                --left[constraint];
+                if(sums[constraint] > targets[constraint] || sums[constraint] + left[constraint] < targets[constraint]){
+                    valid = false;
+                }
+            }
+            if(valid){
+                assignment[position] = value == 1;
+                search(position + 1, mines + value, accumulator);
+            }
+            for(int constraint : constraints){
+                sums[constraint] -= value;
+                ++left[constraint];
+            }
+            if(nodes > nodeLimit){
+                return;
+            }
+        }
+        assignment[position] = false;
+    }
+
+    /**
+     * Counts fields of the component around every number.
+     * @return Number of fields for every number.
+     */
+    private int[] countFields(){
+        int[] fields = new int[targets.length];
+        for(int[] constraints : cellConstraints){
+            for(int constraint : constraints){
+                ++fields[constraint];
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Components with more fields are never enumerated.
+     */
+    static final int MAX_EXACT_CELLS = 256;
+    /**
+     * Smallest probability of a choice made by a probe.
+     */
+    private static final double MIN_PROBABILITY = 0.05;
+
+    /**
+     * Linear indices of fields.
+     */
+    private int[] cells;
+    /**
+     * Indices of numbers adjacent to every field.
+     */
+    private int[][] cellConstraints;
+    /**
+     * Mines left around every number.
+     */
+    private int[] targets;
+    /**
+     * Number of layouts for every number of mines, scaled so that the largest is 1.
+     */
+    private double[] counts;
+    /**
+     * Number of layouts with a mine in a field for every field and number of mines
+     * from cellCountsOffset, scaled like counts.
+     */
+    private double[][] cellCounts;
+    /**
+     * Smallest number of mines covered by cellCounts.
+     */
+    private int cellCountsOffset;
+    /**
+     * Mine probability of every field, set by ProbabilityEngine.
+     */
+    private double[] probabilities;
+    /**
+     * Half-widths of confidence intervals of probabilities or null.
+     */
+    private double[] errors;
+    /**
+     * True if counts are exact.
+     */
+    private boolean exact;
+    /**
+     * True if counts are exact or estimated.
+     */
+    private boolean counted;
+
+    /**
+     * Mines assigned around every number during the search.
+     */
+    private int[] sums;
+    /**
+     * Fields not assigned yet around every number during the search.
+     */
+    private int[] left;
+    /**
+     * Current assignment of fields.
+     */
+    private boolean[] assignment;
+    /**
+     * Search nodes visited so far.
+     */
+    private long nodes;
+    /**
+     * Maximal number of search nodes.
+     */
+    private long nodeLimit;
+}
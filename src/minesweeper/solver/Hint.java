@@ -0,0 +1,65 @@
+package minesweeper.solver;
+
+/**
+ * A field suggested to be reversed next.
+ */
+public class Hint {
+    /**
+     * Creates a hint.
+     * @param x X-coordinate of the field.
+     * @param y Y-coordinate of the field.
+     * @param probability Mine probability of the field, 0 if it is proven safe.
+     * @param safe True if the field is proven safe.
+     */
+    Hint(int x, int y, double probability, boolean safe){
+        this.x = x;
+        this.y = y;
+        this.probability = probability;
+        this.safe = safe;
+    }
+
+    /**
+     * Returns X-coordinate of the field.
+     * @return X-coordinate.
+     */
+    public int getX(){
+        return x;
+    }
+
+    /**
+     * Returns Y-coordinate of the field.
+     * @return Y-coordinate.
+     */
+    public int getY(){
+        return y;
+    }
+
+    /**
+     * Returns mine probability of the field.
+     * @return Probability from 0 to 1, NaN if it could not be computed.
+     */
+    public double getProbability(){
+        return probability;
+    }
+
+    /**
+     * Returns true if the field is proven safe.
+     * @return True if the field is safe.
+     */
+    public boolean isSafe(){
+        return safe;
+    }
+
+    /**
+     * Coordinates of the field.
+     */
+    private int x, y;
+    /**
+     * Mine probability of the field.
+     */
+    private double probability;
+    /**
+     * True if the field is proven safe.
+     */
+    private boolean safe;
+}
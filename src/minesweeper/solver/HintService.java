@@ -0,0 +1,117 @@
+package minesweeper.solver;
+
+import minesweeper.model.MarkChange;
+import minesweeper.model.Model;
+import minesweeper.model.ReverseChange;
+
+/**
+ * Answers which field should be reversed next: a field proven safe if
+ * there is one, otherwise the field with the lowest mine probability.
+ *
+ * The board is scanned only once, when the service is created. Later the
+ * solver and the probability engine are updated only around fields changed
+ * by every reverse, so known safe fields and mines are cached and a hint
+ * costs only the deductions and components touched since the last one.
+ */
+public class HintService {
+    /**
+     * Creates a service for the current state of a game.
+     * @param model Model of a game.
+     */
+    public HintService(Model model){
+        solver = new Solver(model);
+        engine = new ProbabilityEngine(solver);
+    }
+
+    /**
+     * Updates the service after a reverse or a chord.
+     * @param reverseChange Result of the operation.
+     */
+    public void apply(ReverseChange reverseChange){
+        solver.apply(reverseChange);
+    }
+
+    /**
+     * Updates the service after marking a field.
+     * @param x X-coordinate of a field.
+     * @param y Y-coordinate of a field.
+     * @param markChange Result of the operation.
+     */
+    public void apply(int x, int y, MarkChange markChange){
+        solver.apply(x, y, markChange);
+    }
+
+    /**
+     * Finds a field to reverse next.
+     * @return A hint or null if no field is left to reverse.
+     */
+    public Hint getHint(){
+        int width = solver.getWidth();
+        solver.solve();
+        int safeCell = solver.peekSafeCell();
+        if(safeCell >= 0){
+            return new Hint(safeCell % width, safeCell / width, 0, true);
+        }
+
+        engine.update();
+        if(!engine.isExact()){
+            new MonteCarloEstimator(engine).estimate(ESTIMATE_TIME, ESTIMATE_ERROR);
+        }
+        int best = -1;
+        double lowest = Double.POSITIVE_INFINITY;
+        for(FrontierComponent component : engine.getComponents()){
+            int[] cells = component.getCells();
+            for(int i = 0; i < cells.length; ++i){
+                double probability = component.getProbability(i);
+                if(best < 0 || probability < lowest){
+                    best = cells[i];
+                    lowest = probability;
+                }
+            }
+        }
+        double interiorProbability = engine.getInteriorProbability();
+        if(best < 0 || interiorProbability < lowest){
+            int interiorCell = findInteriorCell();
+            if(interiorCell >= 0){
+                best = interiorCell;
+                lowest = interiorProbability;
+            }
+        }
+        return best < 0 ? null : new Hint(best % width, best / width, lowest, false);
+    }
+
+    /**
+     * Finds an unknown field which does not touch any number. Fields never
+     * become interior again, so the search continues where the last one ended.
+     * @return Linear index of the field or -1 if there is none.
+     */
+    private int findInteriorCell(){
+        int size = solver.getWidth()*solver.getHeight();
+        while(interiorCursor < size && !engine.isInterior(interiorCursor)){
+            ++interiorCursor;
+        }
+        return interiorCursor < size ? interiorCursor : -1;
+    }
+
+    /**
+     * Time budget of sampling in milliseconds, used when the frontier is too large to count.
+     */
+    private static final long ESTIMATE_TIME = 200;
+    /**
+     * Error target of sampling.
+     */
+    private static final double ESTIMATE_ERROR = 0.05;
+
+    /**
+     * Solver caching fields known to be safe or mines.
+     */
+    private Solver solver;
+    /**
+     * Engine computing mine probabilities.
+     */
+    private ProbabilityEngine engine;
+    /**
+     * All fields before this one are known not to be interior fields.
+     */
+    private int interiorCursor;
+}
@@ -0,0 +1,326 @@
+package minesweeper.solver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Estimates mine probabilities when some frontier components are too large
+ * for ProbabilityEngine to count their layouts exactly. Layouts of such
+ * components are drawn by weighted random probes, which give unbiased
+ * estimates of the counts, and the estimates are combined with the exact
+ * counts of the other components in the same way as exact counts.
+ *
+ * Probes are split into independent batches, each with its own
+ * SplittableRandom, run in parallel on a fork-join pool or one after
+ * another on the calling thread. The spread of
+ * probabilities computed from separate batches gives 95% confidence
+ * intervals, while the probabilities themselves are computed from all
+ * batches together. Sampling goes on in rounds until the widest interval
+ * is narrow enough or the time budget or the number of rounds runs out.
+ * An estimator on the calling thread limited by rounds gives results
+ * which depend only on its seed.
+ */
+public class MonteCarloEstimator {
+    /**
+     * Creates an estimator running on the common pool.
+     * @param engine Engine holding the components.
+     */
+    public MonteCarloEstimator(ProbabilityEngine engine){
+        this(engine, new Random().nextLong(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates an estimator.
+     * @param engine Engine holding the components.
+     * @param seed Seed of all probes.
+     * @param pool Pool to run probes on.
+     */
+    public MonteCarloEstimator(ProbabilityEngine engine, long seed, ForkJoinPool pool){
+        this.engine = engine;
+        this.pool = pool;
+        random = new SplittableRandom(seed);
+        batches = Math.max(MIN_BATCHES, pool.getParallelism());
+    }
+
+    /**
+     * Creates an estimator running all probes on the calling thread.
+     * @param engine Engine holding the components.
+     * @param seed Seed of all probes.
+     */
+    public MonteCarloEstimator(ProbabilityEngine engine, long seed){
+        this.engine = engine;
+        random = new SplittableRandom(seed);
+        batches = MIN_BATCHES;
+    }
+
+    /**
+     * Estimates probabilities of the current state of the engine. Results
+     * are read with ProbabilityEngine.getProbability and getError, until the
+     * engine is updated again.
+     * @param timeBudget Maximal time of the estimation in milliseconds.
+     * @param errorTarget Sampling stops when no half-width of a 95% confidence interval exceeds it.
+     * @return True if the error target was reached.
+     */
+    public boolean estimate(long timeBudget, double errorTarget){
+        return estimate(System.nanoTime() + timeBudget*1000000L, true, Integer.MAX_VALUE, errorTarget);
+    }
+
+    /**
+     * Estimates probabilities of the current state of the engine in at most
+     * a given number of rounds, without a time budget.
+     * @param maxRounds Maximal number of sampling rounds.
+     * @param errorTarget Sampling stops when no half-width of a 95% confidence interval exceeds it.
+     * @return True if the error target was reached.
+     */
+    public boolean estimateRounds(int maxRounds, double errorTarget){
+        return estimate(0, false, maxRounds, errorTarget);
+    }
+
+    /**
+     * Samples in rounds until the error target, the deadline or the number of rounds is reached.
+     * @param deadline Value of System.nanoTime() after which no round is started.
+     * @param timed False to ignore the deadline.
+     * @param maxRounds Maximal number of sampling rounds.
+     * @param errorTarget Largest allowed half-width of a 95% confidence interval.
+     * @return True if the error target was reached.
+     */
+    private boolean estimate(long deadline, boolean timed, int maxRounds, double errorTarget){
+        components = new ArrayList<>();
+        sampled = new ArrayList<>();
+        for(FrontierComponent component : engine.getComponents()){
+            components.add(component);
+            if(!component.isExact()){
+                sampled.add(component);
+            }
+        }
+        samples = 0;
+        rounds = 0;
+        maxError = 0;
+        if(sampled.isEmpty()){
+            return true;
+        }
+
+        accumulators = new SampleAccumulator[batches][sampled.size()];
+        SplittableRandom[] randoms = new SplittableRandom[batches];
+        for(int b = 0; b < batches; ++b){
+            randoms[b] = random.split();
+            for(int c = 0; c < sampled.size(); ++c){
+                accumulators[b][c] = new SampleAccumulator(sampled.get(c).getCells().length);
+            }
+        }
+        do{
+            if(pool != null){
+                pool.invoke(new SampleTask(randoms, 0, batches));
+            }
+            else{
+                for(int b = 0; b < batches; ++b){
+                    probeBatch(randoms[b], b);
+                }
+            }
+            ++rounds;
+            evaluate();
+        } while(!(maxError <= errorTarget) && rounds < maxRounds && (!timed || System.nanoTime() < deadline));
+        accumulators = null;
+        return maxError <= errorTarget;
+    }
+
+    /**
+     * Returns number of probes made by the last estimation.
+     * @return Number of probes.
+     */
+    public long getSamples(){
+        return samples;
+    }
+
+    /**
+     * Returns number of sampling rounds of the last estimation.
+     * @return Number of rounds.
+     */
+    public int getRounds(){
+        return rounds;
+    }
+
+    /**
+     * Returns the largest half-width of a 95% confidence interval after the last estimation.
+     * @return The largest half-width, NaN if some batch found no valid layout.
+     */
+    public double getMaxError(){
+        return maxError;
+    }
+
+    /**
+     * Computes probabilities from every batch separately to find confidence
+     * intervals, then from all batches together and stores the results.
+     */
+    private void evaluate(){
+        double[][] sums = new double[components.size()][];
+        double[][] squares = new double[components.size()][];
+        for(int j = 0; j < components.size(); ++j){
+            sums[j] = new double[components.get(j).getCells().length];
+            squares[j] = new double[sums[j].length];
+        }
+        double interiorSum = 0, interiorSquare = 0;
+        for(int b = 0; b < batches; ++b){
+            List<FrontierComponent> list = new ArrayList<>(components.size());
+            int c = 0;
+            for(FrontierComponent component : components){
+                list.add(component.isExact() ? component : component.withEstimate(accumulators[b][c++]));
+            }
+            double interior = engine.combine(list);
+            interiorSum += interior;
+            interiorSquare += interior*interior;
+            for(int j = 0; j < list.size(); ++j){
+                for(int i = 0; i < sums[j].length; ++i){
+                    double probability = list.get(j).getProbability(i);
+                    sums[j][i] += probability;
+                    squares[j][i] += probability*probability;
+                }
+            }
+        }
+
+        samples = 0;
+        for(int c = 0; c < sampled.size(); ++c){
+            SampleAccumulator pooled = new SampleAccumulator(sampled.get(c).getCells().length);
+            for(int b = 0; b < batches; ++b){
+                pooled.addAll(accumulators[b][c]);
+            }
+            samples += pooled.getSamples();
+            sampled.get(c).setCounts(pooled, false);
+        }
+        double interior = engine.combine(components);
+        maxError = halfWidth(interiorSum, interiorSquare);
+        engine.setInterior(interior, maxError);
+        for(int j = 0; j < components.size(); ++j){
+            double[] errors = new double[sums[j].length];
+            for(int i = 0; i < errors.length; ++i){
+                errors[i] = halfWidth(sums[j][i], squares[j][i]);
+                maxError = Double.isNaN(errors[i]) ? Double.NaN : Math.max(maxError, errors[i]);
+            }
+            components.get(j).setErrors(errors);
+        }
+    }
+
+    /**
+     * Makes a round of probes of every sampled component in a batch.
+     * @param random Source of randomness of the batch.
+     * @param batch Index of the batch.
+     */
+    private void probeBatch(SplittableRandom random, int batch){
+        for(int c = 0; c < sampled.size(); ++c){
+            FrontierComponent component = sampled.get(c);
+            for(int i = 0; i < PROBES_PER_ROUND; ++i){
+                component.probe(random, accumulators[batch][c]);
+            }
+        }
+    }
+
+    /**
+     * Returns half-width of the 95% confidence interval of a mean of batches.
+     * @param sum Sum of values of all batches.
+     * @param square Sum of squared values of all batches.
+     * @return The half-width.
+     */
+    private double halfWidth(double sum, double square){
+        double variance = Math.max(square - sum*sum/batches, 0) / (batches - 1);
+        return Z_95*Math.sqrt(variance / batches);
+    }
+
+    /**
+     * Smallest number of batches used to find confidence intervals.
+     */
+    private static final int MIN_BATCHES = 8;
+    /**
+     * Probes of every component made by a batch in a single round.
+     */
+    private static final int PROBES_PER_ROUND = 256;
+    /**
+     * Quantile of the normal distribution for a 95% interval.
+     */
+    private static final double Z_95 = 1.96;
+
+    /**
+     * Engine holding the components.
+     */
+    private ProbabilityEngine engine;
+    /**
+     * Pool running probes or null to run them on the calling thread.
+     */
+    private ForkJoinPool pool;
+    /**
+     * Source of seeds of batches.
+     */
+    private SplittableRandom random;
+    /**
+     * Number of batches.
+     */
+    private int batches;
+    /**
+     * All components of the estimated state.
+     */
+    private List<FrontierComponent> components;
+    /**
+     * Components which are sampled.
+     */
+    private List<FrontierComponent> sampled;
+    /**
+     * Accumulator of every batch and sampled component.
+     */
+    private SampleAccumulator[][] accumulators;
+    /**
+     * Number of probes of the last estimation.
+     */
+    private long samples;
+    /**
+     * Number of rounds of the last estimation.
+     */
+    private int rounds;
+    /**
+     * Largest half-width of a confidence interval.
+     */
+    private double maxError;
+
+    /**
+     * Runs a round of probes of a range of batches.
+     */
+    private class SampleTask extends RecursiveAction {
+        /**
+         * Creates a task.
+         * @param randoms Source of randomness of every batch.
+         * @param from First batch of the range.
+         * @param to Batch after the last batch of the range.
+         */
+        SampleTask(SplittableRandom[] randoms, int from, int to){
+            this.randoms = randoms;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute(){
+            if(to - from > 1){
+                int middle = (from + to) >>> 1;
+                invokeAll(new SampleTask(randoms, from, middle), new SampleTask(randoms, middle, to));
+                return;
+            }
+            probeBatch(randoms[from], from);
+        }
+
+        /**
+         * Version of the serialized form, since every RecursiveAction is serializable.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Source of randomness of every batch.
+         */
+        private SplittableRandom[] randoms;
+        /**
+         * Range of batches.
+         */
+        private int from, to;
+    }
+}
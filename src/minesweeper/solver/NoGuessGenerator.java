@@ -0,0 +1,230 @@
+package minesweeper.solver;
+
+import minesweeper.model.GameState;
+import minesweeper.model.LayoutChooser;
+import minesweeper.model.Model;
+import minesweeper.model.ReverseChange;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chooses boards which can be solved from the first reversed field without
+ * guessing. Candidate seeds are tried on headless models by several threads
+ * at once. Every candidate is played by the deterministic solver, which
+ * reverses only fields proven safe, and the first candidate it solves wins,
+ * cancelling the other threads. The choice is made while the first field is
+ * being reversed, so it is limited to small boards of moderate density,
+ * where solvable boards are common, and it gives up after MAX_NANOS.
+ */
+public class NoGuessGenerator implements LayoutChooser {
+    /**
+     * Creates a generator using all processors.
+     */
+    public NoGuessGenerator(){
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a generator.
+     * @param threads Number of threads checking candidates.
+     */
+    public NoGuessGenerator(int threads){
+        this.threads = threads;
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "NoGuessGenerator");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Checks if boards solvable without guessing are searched for a board.
+     * @param width Width of a board.
+     * @param height Height of a board.
+     * @param bombs Bombs in a board.
+     * @return True if the board has at most MAX_FIELDS fields and at most MAX_DENSITY of them are bombs.
+     */
+    public static boolean isOffered(int width, int height, int bombs){
+        long fields = (long)width*height;
+        return fields <= MAX_FIELDS && bombs <= fields*MAX_DENSITY;
+    }
+
+    /**
+     * Finds a seed of a board solvable without guessing. Gives up after
+     * MAX_ATTEMPTS candidates or MAX_NANOS and returns the given seed then,
+     * and returns it at once for boards which are not offered.
+     * @param width Width of a board.
+     * @param height Height of a board.
+     * @param bombs Bombs in a board.
+     * @param x X-coordinate of the first reversed field.
+     * @param y Y-coordinate of the first reversed field.
+     * @param seed Seed of the model, a source of candidate seeds.
+     * @return Seed of the chosen board.
+     */
+    @Override
+    public synchronized long chooseSeed(int width, int height, int bombs, int x, int y, long seed){
+        if(!isOffered(width, height, bombs)){
+            lastSolvable = false;
+            lastAttempts = 0;
+            lastNanos = 0;
+            return seed;
+        }
+        long start = System.nanoTime();
+        AtomicBoolean found = new AtomicBoolean();
+        AtomicLong attempts = new AtomicLong();
+        SplittableRandom random = new SplittableRandom(seed);
+        List<Callable<Long>> candidates = new ArrayList<>(threads);
+        for(int i = 0; i < threads; ++i){
+            SplittableRandom threadRandom = random.split();
+            candidates.add(() -> search(width, height, bombs, x, y, threadRandom, found, attempts));
+        }
+
+        long chosen = seed;
+        try{
+            chosen = executor.invokeAny(candidates, MAX_NANOS, TimeUnit.NANOSECONDS);
+            lastSolvable = true;
+        }
+        catch(ExecutionException | TimeoutException e){
+            lastSolvable = false;
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            lastSolvable = false;
+        }
+        found.set(true);
+        lastAttempts = attempts.get();
+        lastNanos = System.nanoTime() - start;
+        return chosen;
+    }
+
+    /**
+     * Returns true if the last chosen board is solvable without guessing.
+     * @return False if the generator gave up.
+     */
+    public boolean isLastSolvable(){
+        return lastSolvable;
+    }
+
+    /**
+     * Returns number of candidates checked by all threads during the last choice.
+     * @return Number of candidates.
+     */
+    public long getLastAttempts(){
+        return lastAttempts;
+    }
+
+    /**
+     * Returns duration of the last choice.
+     * @return Duration in nanoseconds.
+     */
+    public long getLastNanos(){
+        return lastNanos;
+    }
+
+    /**
+     * Stops threads of the generator.
+     */
+    public void dispose(){
+        executor.shutdownNow();
+    }
+
+    /**
+     * Returns true if the deterministic solver solves a board without guessing.
+     * @param model Headless model of a board, with no field reversed yet.
+     * @param x X-coordinate of the first reversed field.
+     * @param y Y-coordinate of the first reversed field.
+     * @return True if the board was solved.
+     */
+    public static boolean isSolvable(Model model, int x, int y){
+        int width = model.getWidth();
+        Solver solver = new Solver(width, model.getHeight(), model.getBombs());
+        solver.apply(model.reverse(x, y));
+        while(model.getGameState() != GameState.SOLVED){
+            solver.solve();
+            int index = solver.nextSafeCell();
+            if(index < 0){
+                return false;
+            }
+            ReverseChange reverseChange = model.reverse(index % width, index / width);
+            solver.apply(reverseChange);
+        }
+        return true;
+    }
+
+    /**
+     * Checks candidates until one of threads finds a solvable board.
+     * @param width Width of a board.
+     * @param height Height of a board.
+     * @param bombs Bombs in a board.
+     * @param x X-coordinate of the first reversed field.
+     * @param y Y-coordinate of the first reversed field.
+     * @param random Source of candidate seeds of this thread.
+     * @param found Set when some thread found a board.
+     * @param attempts Number of candidates checked by all threads.
+     * @return Seed of a solvable board.
+     * @throws IllegalStateException If no board was found.
+     */
+    private static long search(int width, int height, int bombs, int x, int y, SplittableRandom random,
+                               AtomicBoolean found, AtomicLong attempts){
+        while(!found.get() && !Thread.currentThread().isInterrupted() &&
+                attempts.incrementAndGet() <= MAX_ATTEMPTS){
+            long candidate = random.nextLong();
+            Model model = Model.createHeadless(width, height, bombs, candidate);
+            boolean solvable = isSolvable(model, x, y);
+            model.dispose();
+            if(solvable && found.compareAndSet(false, true)){
+                return candidate;
+            }
+        }
+        throw new IllegalStateException("No board solvable without guessing was found.");
+    }
+
+    /**
+     * Number of candidates after which the generator gives up.
+     */
+    private static final long MAX_ATTEMPTS = 100000;
+    /**
+     * Time after which the generator gives up, in nanoseconds.
+     */
+    private static final long MAX_NANOS = 1000000000L;
+    /**
+     * Largest number of fields of a board searched for.
+     */
+    private static final long MAX_FIELDS = 2500;
+    /**
+     * Largest ratio of bombs to fields of a board searched for, a little
+     * above the hard difficulty.
+     */
+    private static final double MAX_DENSITY = 0.21;
+
+    /**
+     * Number of threads checking candidates.
+     */
+    private int threads;
+    /**
+     * Threads checking candidates.
+     */
+    private ExecutorService executor;
+    /**
+     * True if the last chosen board is solvable without guessing.
+     */
+    private boolean lastSolvable;
+    /**
+     * Number of candidates checked during the last choice.
+     */
+    private long lastAttempts;
+    /**
+     * Duration of the last choice in nanoseconds.
+     */
+    private long lastNanos;
+}
@@ -0,0 +1,244 @@
+package minesweeper.solver;
+
+/**
+ * Precomputed deductions of two adjacent numbers. The window of such a pair
+ * is 4 fields long and 3 fields wide: the two numbers in the middle and ten
+ * fields around them. A window is packed into an 18-bit key: one bit for
+ * every one of the ten fields telling if it is unknown, then the remaining
+ * mines of the first and of the second number, 4 bits each. Every key maps
+ * to the fields which are safe or mines in all arrangements of mines
+ * satisfying both numbers, so a lookup makes every deduction the pair allows.
+ *
+ * Vertical pairs are read transposed, so they share the table with
+ * horizontal ones. The remaining symmetries of the window, mirroring it
+ * horizontally (swapping the numbers), vertically or both, map keys onto
+ * each other, so only the smallest key of every class is solved and the
+ * others copy its deductions with fields permuted.
+ */
+class PatternTable {
+    /**
+     * Solves all canonical keys and fills the table.
+     */
+    private PatternTable(){
+        entries = new int[KEYS];
+        for(int key = 0; key < KEYS; ++key){
+            int canonical = key, symmetry = 0;
+            for(int s = 1; s < SYMMETRIES; ++s){
+                int transformed = transformKey(key, s);
+                if(transformed < canonical){
+                    canonical = transformed;
+                    symmetry = s;
+                }
+            }
+            if(canonical == key){
+                entries[key] = solve(key);
+            }
+            else{
+                // Every symmetry is its own inverse.
+                entries[key] = transformEntry(entries[canonical], symmetry);
+            }
+        }
+    }
+
+    /**
+     * Returns the table, building it on the first call.
+     * @return The table.
+     */
+    static PatternTable getInstance(){
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Packs a window into a key.
+     * @param unknown Bits of unknown fields of the window, in the order of WINDOW.
+     * @param firstRemaining Remaining mines of the first number, 0-8.
+     * @param secondRemaining Remaining mines of the second number, 0-8.
+     * @return The key.
+     */
+    static int key(int unknown, int firstRemaining, int secondRemaining){
+        return unknown | firstRemaining << FIELDS | secondRemaining << (FIELDS + 4);
+    }
+
+    /**
+     * Returns deductions for a window.
+     * @param key Key of the window.
+     * @return Bits of safe fields in bits 0-9 and of mines in bits 10-19 or 0 if nothing can be deduced.
+     */
+    int lookup(int key){
+        return entries[key];
+    }
+
+    /**
+     * Finds fields of a window which are safe or mines in all arrangements
+     * of mines on its unknown fields satisfying both numbers.
+     * @param key Key of the window.
+     * @return Entry of the table.
+     */
+    private static int solve(int key){
+        int unknown = key & FIELDS_MASK;
+        int firstRemaining = (key >>> FIELDS) & 0xF, secondRemaining = (key >>> (FIELDS + 4)) & 0xF;
+        if(firstRemaining > Integer.bitCount(unknown & FIRST_NEIGHBOURS) ||
+                secondRemaining > Integer.bitCount(unknown & SECOND_NEIGHBOURS)){
+            return 0;
+        }
+
+        int anyMine = 0, allMines = FIELDS_MASK;
+        boolean consistent = false;
+        // Walks all subsets of unknown fields, including the empty one.
+        for(int mines = unknown; ; mines = (mines - 1) & unknown){
+            if(Integer.bitCount(mines & FIRST_NEIGHBOURS) == firstRemaining &&
+                    Integer.bitCount(mines & SECOND_NEIGHBOURS) == secondRemaining){
+                anyMine |= mines;
+                allMines &= mines;
+                consistent = true;
+            }
+            if(mines == 0){
+                break;
+            }
+        }
+        if(!consistent){
+            return 0;
+        }
+        return (unknown & ~anyMine) | (allMines << FIELDS);
+    }
+
+    /**
+     * Maps a key through a symmetry of the window.
+     * @param key The key.
+     * @param symmetry Index of the symmetry.
+     * @return The transformed key.
+     */
+    private static int transformKey(int key, int symmetry){
+        int unknown = permute(key & FIELDS_MASK, symmetry);
+        int firstRemaining = (key >>> FIELDS) & 0xF, secondRemaining = (key >>> (FIELDS + 4)) & 0xF;
+        return SWAPS_NUMBERS[symmetry] ? key(unknown, secondRemaining, firstRemaining) :
+                key(unknown, firstRemaining, secondRemaining);
+    }
+
+    /**
+     * Maps deductions through a symmetry of the window.
+     * @param entry Entry of the table.
+     * @param symmetry Index of the symmetry.
+     * @return The transformed entry.
+     */
+    private static int transformEntry(int entry, int symmetry){
+        return permute(entry & FIELDS_MASK, symmetry) | permute(entry >>> FIELDS, symmetry) << FIELDS;
+    }
+
+    /**
+     * Moves bits of fields of a window through a symmetry.
+     * @param bits Bits of fields.
+     * @param symmetry Index of the symmetry.
+     * @return Bits of the transformed fields.
+     */
+    private static int permute(int bits, int symmetry){
+        int result = 0;
+        for(int field = 0; field < FIELDS; ++field){
+            result |= ((bits >>> field) & 1) << PERMUTATIONS[symmetry][field];
+        }
+        return result;
+    }
+
+    /**
+     * Finds the field of a window at a position.
+     * @param column Column of the window, 0-3.
+     * @param row Row of the window, 0-2.
+     * @return Index of the field in WINDOW or -1 for the two numbers.
+     */
+    private static int fieldAt(int column, int row){
+        for(int field = 0; field < FIELDS; ++field){
+            if(WINDOW[field][0] == column && WINDOW[field][1] == row){
+                return field;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Computes where every field of a window goes under every symmetry.
+     * @return Permutations of fields.
+     */
+    private static int[][] createPermutations(){
+        int[][] permutations = new int[SYMMETRIES][FIELDS];
+        for(int symmetry = 0; symmetry < SYMMETRIES; ++symmetry){
+            for(int field = 0; field < FIELDS; ++field){
+                int column = WINDOW[field][0], row = WINDOW[field][1];
+                if((symmetry & 1) != 0){
+                    column = 3 - column;
+                }
+                if((symmetry & 2) != 0){
+                    row = 2 - row;
+                }
+                permutations[symmetry][field] = fieldAt(column, row);
+            }
+        }
+        return permutations;
+    }
+
+    /**
+     * Returns bits of fields of a window adjacent to a number.
+     * @param column Column of the number.
+     * @return Bits of fields in the order of WINDOW.
+     */
+    private static int neighbours(int column){
+        int bits = 0;
+        for(int field = 0; field < FIELDS; ++field){
+            if(Math.abs(WINDOW[field][0] - column) <= 1){
+                bits |= 1 << field;
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Lazily built instance, so the table is built on the first use.
+     */
+    private static class Holder {
+        /**
+         * The table.
+         */
+        private static final PatternTable INSTANCE = new PatternTable();
+    }
+
+    /**
+     * Fields of a window around numbers at (1, 1) and (2, 1), as (column, row).
+     */
+    static final int[][] WINDOW = {
+            {0, 0}, {1, 0}, {2, 0}, {3, 0},
+            {0, 1}, {3, 1},
+            {0, 2}, {1, 2}, {2, 2}, {3, 2}
+    };
+    /**
+     * Number of fields of a window except the two numbers.
+     */
+    static final int FIELDS = 10;
+    /**
+     * Mask of bits of fields of a window.
+     */
+    private static final int FIELDS_MASK = (1 << FIELDS) - 1;
+    /**
+     * Number of keys.
+     */
+    private static final int KEYS = 1 << (FIELDS + 8);
+    /**
+     * Number of symmetries of a window: identity, horizontal and vertical mirrors and both.
+     */
+    private static final int SYMMETRIES = 4;
+    /**
+     * True for symmetries which exchange the two numbers.
+     */
+    private static final boolean[] SWAPS_NUMBERS = {false, true, false, true};
+    /**
+     * Target field of every field under every symmetry.
+     */
+    private static final int[][] PERMUTATIONS = createPermutations();
+    /**
+     * Fields adjacent to the first and to the second number.
+     */
+    private static final int FIRST_NEIGHBOURS = neighbours(1), SECOND_NEIGHBOURS = neighbours(2);
+
+    /**
+     * Deductions for every key.
+     */
+    private int[] entries;
+}
@@ -0,0 +1,633 @@
+package minesweeper.solver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Computes exact mine probabilities of all fields from the state visible
+ * to a player. Unknown fields adjacent to numbers are split into independent
+ * components. Layouts of every component are counted separately for every
+ * number of mines and combined with the total number of bombs, where the
+ * remaining bombs are spread over the unconstrained interior in C(I, m) ways.
+ *
+ * Counts of a component are cached. After a move only components lying
+ * within two fields of a reversed or resolved field are rebuilt and counted
+ * again, the rest is reused and only the cheap combination is redone.
+ */
+public class ProbabilityEngine {
+    /**
+     * Creates an engine for the current state of a solver. From now on the
+     * solver records its changes, which are consumed by update.
+     * @param solver Solver holding the visible board.
+     */
+    public ProbabilityEngine(Solver solver){
+        this.solver = solver;
+        width = solver.getWidth();
+        height = solver.getHeight();
+        componentOf = new FrontierComponent[width*height];
+        localIndex = new int[width*height];
+        components = new LinkedHashSet<>();
+        seeds = new CellQueue();
+        solver.trackChanges();
+        while(solver.hasChanges()){
+            solver.takeChange();
+        }
+        for(int index = 0; index < width*height; ++index){
+            if(isFrontier(index)){
+                seeds.add(index);
+            }
+        }
+        buildComponents();
+        combine();
+    }
+
+    /**
+     * Brings probabilities up to date with the solver. Should be called after
+     * the solver applied a change and solved what it could.
+     */
+    public void update(){
+        while(solver.hasChanges()){
+            int index = solver.takeChange();
+            int x = index % width, y = index / width;
+            for(int i = Math.max(y - 2, 0); i <= Math.min(y + 2, height - 1); ++i){
+                for(int j = Math.max(x - 2, 0); j <= Math.min(x + 2, width - 1); ++j){
+                    int cell = i*width + j;
+                    if(componentOf[cell] != null){
+                        dissolve(componentOf[cell]);
+                    }
+                    else if(isFrontier(cell)){
+                        seeds.add(cell);
+                    }
+                }
+            }
+        }
+        buildComponents();
+        combine();
+    }
+
+    /**
+     * Returns mine probability of a field.
+     * @param x X-coordinate of a field.
+     * @param y Y-coordinate of a field.
+     * @return Probability from 0 to 1, or NaN if some component was neither counted nor estimated.
+     */
+    public double getProbability(int x, int y){
+        return getProbability(y*width + x);
+    }
+
+    /**
+     * Returns mine probability of fields which do not touch any number.
+     * @return Probability from 0 to 1, or NaN if some component was neither counted nor estimated.
+     */
+    public double getInteriorProbability(){
+        return interiorProbability;
+    }
+
+    /**
+     * Returns half-width of the 95% confidence interval of the mine probability
+     * of a field. It is 0 unless the probability was estimated by sampling.
+     * @param x X-coordinate of a field.
+     * @param y Y-coordinate of a field.
+     * @return The half-width.
+     */
+    public double getError(int x, int y){
+        int index = y*width + x;
+        if(solver.getCell(index) != Solver.UNKNOWN){
+            return 0;
+        }
+        if(componentOf[index] != null){
+            return componentOf[index].getError(localIndex[index]);
+        }
+        return interiorError;
+    }
+
+    /**
+     * Returns true if all components were counted exactly.
+     * @return True if probabilities are known.
+     */
+    public boolean isExact(){
+        return exact;
+    }
+
+    /**
+     * Returns number of frontier components.
+     * @return Number of components.
+     */
+    public int getNumberOfComponents(){
+        return components.size();
+    }
+
+    /**
+     * Returns number of unknown fields adjacent to numbers.
+     * @return Size of the frontier.
+     */
+    public int getFrontierSize(){
+        return frontierSize;
+    }
+
+    /**
+     * Returns number of components counted by the last update.
+     * @return Number of counted components.
+     */
+    public int getLastCountedComponents(){
+        return lastCountedComponents;
+    }
+
+    /**
+     * Returns mine probability of a field.
+     * @param index Linear index of a field.
+     * @return Probability from 0 to 1, or NaN if some component was neither counted nor estimated.
+     */
+    double getProbability(int index){
+        int cell = solver.getCell(index);
+        if(cell == Solver.MINE){
+            return 1;
+        }
+        if(cell != Solver.UNKNOWN){
+            return 0;
+        }
+        if(componentOf[index] != null){
+            FrontierComponent component = componentOf[index];
+            return Double.isNaN(interiorProbability) ? Double.NaN : component.getProbability(localIndex[index]);
+        }
+        return interiorProbability;
+    }
+
+    /**
+     * Returns true if a field is unknown and does not touch any number.
+     * @param index Linear index of a field.
+     * @return True if the field is an interior field.
+     */
+    boolean isInterior(int index){
+        return solver.getCell(index) == Solver.UNKNOWN && componentOf[index] == null;
+    }
+
+    /**
+     * Returns current frontier components.
+     * @return The components.
+     */
+    Iterable<FrontierComponent> getComponents(){
+        return components;
+    }
+
+    /**
+     * Removes a component, its fields become seeds of new components.
+     * @param component Component to remove.
+     */
+    private void dissolve(FrontierComponent component){
+        components.remove(component);
+        for(int cell : component.getCells()){
+            componentOf[cell] = null;
+            seeds.add(cell);
+        }
+    }
+
+    /**
+     * Groups seeds and frontier fields connected to them into new components
+     * and counts their layouts. Existing components reached by the search are
+     * dissolved and merged.
+     */
+    private void buildComponents(){
+        lastCountedComponents = 0;
+        CellQueue queue = new CellQueue();
+        int[] cells = new int[16];
+        while(!seeds.isEmpty()){
+            int seed = seeds.take();
+            if(componentOf[seed] != null || !isFrontier(seed)){
+                continue;
+            }
+
+            FrontierComponent component = new FrontierComponent();
+            int size = 0;
+            componentOf[seed] = component;
+            queue.add(seed);
+            while(!queue.isEmpty()){
+                int cell = queue.take();
+                if(size == cells.length){
+                    cells = Arrays.copyOf(cells, 2*size);
+                }
+                cells[size++] = cell;
+                int x = cell % width, y = cell / width;
+                for(int i = Math.max(y - 2, 0); i <= Math.min(y + 2, height - 1); ++i){
+                    for(int j = Math.max(x - 2, 0); j <= Math.min(x + 2, width - 1); ++j){
+                        int other = i*width + j;
+                        if(componentOf[other] == component || !sharesNumber(cell, other)){
+                            continue;
+                        }
+                        if(componentOf[other] != null){
+                            dissolve(componentOf[other]);
+                        }
+                        componentOf[other] = component;
+                        queue.add(other);
+                    }
+                }
+            }
+
+            int[] componentCells = Arrays.copyOf(cells, size);
+            for(int i = 0; i < size; ++i){
+                localIndex[componentCells[i]] = i;
+            }
+            component.build(solver, componentCells);
+            component.enumerate(NODE_LIMIT);
+            components.add(component);
+            ++lastCountedComponents;
+        }
+    }
+
+    /**
+     * Combines counts of all current components and stores the probabilities.
+     */
+    private void combine(){
+        ArrayList<FrontierComponent> list = new ArrayList<>(components);
+        frontierSize = 0;
+        exact = true;
+        boolean counted = true;
+        for(FrontierComponent component : list){
+            frontierSize += component.getCells().length;
+            exact &= component.isExact();
+            counted &= component.isCounted();
+            component.setErrors(null);
+        }
+        interiorError = 0;
+        interiorProbability = counted ? combine(list) : Double.NaN;
+    }
+
+    /**
+     * Combines counts of given components with the number of bombs left and
+     * sets probabilities of their fields.
+     * Let w_c(k) be the layouts of component c with k mines and B(t) = C(I, M - t)
+     * the ways to place the rest of M bombs in I interior fields. Going backwards,
+     * H_c(t) = sum_k w_c(k) H_(c+1)(t + k) with H_n = B, so the weight of k mines
+     * in component c is sum_a P_c(a) H_(c+1)(a + k), where P_c is the convolution
+     * of all earlier components.
+     *
+     * Every w_c(k) is multiplied by L^k and B(t) divided by L^t, which does not
+     * change any product. L is chosen so that B(t) / L^t is flat where the
+     * product peaks, so all vectors are concentrated around the same numbers of
+     * mines and can be rescaled and trimmed without losing anything that matters.
+     * @param list Counted components covering the whole frontier.
+     * @return Mine probability of interior fields, NaN if the state is inconsistent.
+     */
+    double combine(List<FrontierComponent> list){
+        int frontier = 0;
+        for(FrontierComponent component : list){
+            frontier += component.getCells().length;
+        }
+        int minesLeft = solver.getBombs() - solver.getKnownMines();
+        int interior = solver.getUnknownCells() - frontier;
+        int n = list.size();
+        double logTilt = findLogTilt(list, minesLeft, interior);
+        WeightVector[] tilted = new WeightVector[n];
+        WeightVector[] prefix = new WeightVector[n + 1];
+        prefix[0] = new WeightVector(new double[]{1}, 0);
+        for(int c = 0; c < n && !Double.isNaN(logTilt); ++c){
+            tilted[c] = tilt(list.get(c).getCounts(), logTilt);
+            prefix[c + 1] = prefix[c].convolve(tilted[c]);
+        }
+        if(Double.isNaN(logTilt) || prefix[n].isEmpty()){
+            for(FrontierComponent component : list){
+                double[] probabilities = new double[component.getCells().length];
+                Arrays.fill(probabilities, Double.NaN);
+                component.setProbabilities(probabilities);
+            }
+            return Double.NaN;
+        }
+
+        WeightVector suffix = binomialWeights(interior, minesLeft, logTilt, prefix[n].getStart(), prefix[n].getEnd());
+        double total = 0, interiorMines = 0;
+        for(int t = prefix[n].getStart(); t <= prefix[n].getEnd(); ++t){
+            double weight = prefix[n].get(t)*suffix.get(t);
+            total += weight;
+            interiorMines += weight*(minesLeft - t);
+        }
+
+        for(int c = n - 1; c >= 0; --c){
+            FrontierComponent component = list.get(c);
+            double[] counts = component.getCounts();
+            double[] weights = new double[counts.length];
+            double componentTotal = 0;
+            for(int k = tilted[c].getStart(); k <= tilted[c].getEnd(); ++k){
+                for(int a = prefix[c].getStart(); a <= prefix[c].getEnd(); ++a){
+                    weights[k] += prefix[c].get(a)*suffix.get(a + k);
+                }
+                componentTotal += tilted[c].get(k)*weights[k];
+                // Weight of a layout with k mines, including the tilt.
+                weights[k] = counts[k] > 0 ? weights[k]*tilted[c].get(k) / counts[k] : 0;
+            }
+
+            int offset = component.getCellCountsOffset();
+            double[] probabilities = new double[component.getCells().length];
+            for(int i = 0; i < probabilities.length; ++i){
+                double[] cellCounts = component.getCellCounts(i);
+                double mine = 0;
+                for(int k = 0; k < cellCounts.length; ++k){
+                    mine += cellCounts[k]*weights[offset + k];
+                }
+                probabilities[i] = componentTotal > 0 ? mine / componentTotal : Double.NaN;
+            }
+            component.setProbabilities(probabilities);
+
+            if(c > 0){
+                int start = prefix[c - 1].getStart() + tilted[c - 1].getStart();
+                double[] next = new double[Math.max(prefix[c - 1].getEnd() + tilted[c - 1].getEnd() - start + 1, 0)];
+                for(int t = 0; t < next.length; ++t){
+                    for(int k = tilted[c].getStart(); k <= tilted[c].getEnd(); ++k){
+                        next[t] += tilted[c].get(k)*suffix.get(start + t + k);
+                    }
+                }
+                suffix = new WeightVector(next, start);
+            }
+        }
+        return total > 0 && interior > 0 ? interiorMines / total / interior : 0;
+    }
+
+    /**
+     * Sets the interior probability and its confidence interval found by an estimator.
+     * @param probability Mine probability of interior fields.
+     * @param error Half-width of the 95% confidence interval.
+     */
+    void setInterior(double probability, double error){
+        interiorProbability = probability;
+        interiorError = error;
+    }
+
+    /**
+     * Returns true if a field is unknown and adjacent to a number.
+     * @param index Linear index of a field.
+     * @return True if the field belongs to the frontier.
+     */
+    private boolean isFrontier(int index){
+        if(solver.getCell(index) != Solver.UNKNOWN){
+            return false;
+        }
+        int x = index % width, y = index / width;
+        for(int i = Math.max(y - 1, 0); i <= Math.min(y + 1, height - 1); ++i){
+            for(int j = Math.max(x - 1, 0); j <= Math.min(x + 1, width - 1); ++j){
+                if(solver.getCell(i*width + j) >= 0){
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the second field is a frontier field adjacent
+     * to a number which is also adjacent to the first field.
+     * @param first Linear index of a frontier field.
+     * @param second Linear index of a field at most two fields away.
+     * @return True if both fields are constrained by a common number.
+     */
+    private boolean sharesNumber(int first, int second){
+        if(solver.getCell(second) != Solver.UNKNOWN){
+            return false;
+        }
+        int ax = first % width, ay = first / width, bx = second % width, by = second / width;
+        for(int i = Math.max(Math.max(ay, by) - 1, 0); i <= Math.min(Math.min(ay, by) + 1, height - 1); ++i){
+            for(int j = Math.max(Math.max(ax, bx) - 1, 0); j <= Math.min(Math.min(ax, bx) + 1, width - 1); ++j){
+                if(solver.getCell(i*width + j) >= 0){
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the logarithm of the tilt L used by combine. The total number of
+     * frontier mines t where the product peaks satisfies t = mean_L(t), the
+     * mean number of frontier mines under counts tilted by L(t) = B(t + 1) / B(t),
+     * and it is found by bisection. Without interior fields all bombs left
+     * must be in the frontier, so L is chosen to make that the mean.
+     * @param list Counted components.
+     * @param minesLeft Number of bombs not resolved yet.
+     * @param interior Number of interior fields.
+     * @return Logarithm of the tilt or NaN if no layout fits the bombs left.
+     */
+    private static double findLogTilt(List<FrontierComponent> list, int minesLeft, int interior){
+        int fewest = 0, most = 0;
+        for(FrontierComponent component : list){
+            double[] counts = component.getCounts();
+            int first = 0, last = counts.length - 1;
+            while(first <= last && counts[first] == 0){
+                ++first;
+            }
+            while(last >= first && counts[last] == 0){
+                --last;
+            }
+            if(first > last){
+                return Double.NaN;
+            }
+            fewest += first;
+            most += last;
+        }
+
+        double low, high;
+        if(interior == 0){
+            if(minesLeft < fewest || minesLeft > most){
+                return Double.NaN;
+            }
+            low = -MAX_LOG_TILT;
+            high = MAX_LOG_TILT;
+            for(int i = 0; i < BISECTION_STEPS; ++i){
+                double middle = (low + high) / 2;
+                if(mean(list, middle) < minesLeft){
+                    low = middle;
+                }
+                else{
+                    high = middle;
+                }
+            }
+            return (low + high) / 2;
+        }
+
+        low = Math.max(fewest, minesLeft - interior);
+        high = Math.min(most, minesLeft);
+        if(low > high){
+            return Double.NaN;
+        }
+        for(int i = 0; i < BISECTION_STEPS; ++i){
+            double middle = (low + high) / 2;
+            if(mean(list, logTilt(middle, minesLeft, interior)) > middle){
+                low = middle;
+            }
+            else{
+                high = middle;
+            }
+        }
+        return logTilt((low + high) / 2, minesLeft, interior);
+    }
+
+    /**
+     * Returns logarithm of B(t + 1) / B(t) = (M - t) / (I - M + t + 1), clamped.
+     * @param frontierMines Number of frontier mines t.
+     * @param minesLeft Number of bombs not resolved yet.
+     * @param interior Number of interior fields.
+     * @return Logarithm of the ratio.
+     */
+    private static double logTilt(double frontierMines, int minesLeft, int interior){
+        double ratio = Math.log((minesLeft - frontierMines) / (interior - minesLeft + frontierMines + 1));
+        return Math.max(-MAX_LOG_TILT, Math.min(MAX_LOG_TILT, ratio));
+    }
+
+    /**
+     * Returns the mean total number of mines of components with counts tilted by L.
+     * @param list Counted components.
+     * @param logTilt Logarithm of L.
+     * @return The mean.
+     */
+    private static double mean(List<FrontierComponent> list, double logTilt){
+        double mean = 0;
+        for(FrontierComponent component : list){
+            double[] counts = component.getCounts();
+            double max = Double.NEGATIVE_INFINITY;
+            for(int k = 0; k < counts.length; ++k){
+                if(counts[k] > 0){
+                    max = Math.max(max, Math.log(counts[k]) + k*logTilt);
+                }
+            }
+            double sum = 0, weighted = 0;
+            for(int k = 0; k < counts.length; ++k){
+                if(counts[k] > 0){
+                    double weight = Math.exp(Math.log(counts[k]) + k*logTilt - max);
+                    sum += weight;
+                    weighted += k*weight;
+                }
+            }
+            mean += weighted / sum;
+        }
+        return mean;
+    }
+
+    /**
+     * Multiplies counts by L^k.
+     * @param counts Counts for every number of mines.
+     * @param logTilt Logarithm of L.
+     * @return Tilted counts.
+     */
+    private static WeightVector tilt(double[] counts, double logTilt){
+        double max = Double.NEGATIVE_INFINITY;
+        for(int k = 0; k < counts.length; ++k){
+            if(counts[k] > 0){
+                max = Math.max(max, Math.log(counts[k]) + k*logTilt);
+            }
+        }
+        double[] tilted = new double[counts.length];
+        for(int k = 0; k < counts.length; ++k){
+            if(counts[k] > 0){
+                tilted[k] = Math.exp(Math.log(counts[k]) + k*logTilt - max);
+            }
+        }
+        return new WeightVector(tilted, 0);
+    }
+
+    /**
+     * Returns B(t) / L^t = C(interior, minesLeft - t) / L^t for t in a range.
+     * @param interior Number of interior fields.
+     * @param minesLeft Number of bombs not resolved yet.
+     * @param logTilt Logarithm of L.
+     * @param from First t.
+     * @param to Last t.
+     * @return Tilted weights.
+     */
+    private static WeightVector binomialWeights(int interior, int minesLeft, double logTilt, int from, int to){
+        double[] logWeights = new double[to - from + 1];
+        double max = Double.NEGATIVE_INFINITY;
+        for(int t = from; t <= to; ++t){
+            int m = minesLeft - t;
+            logWeights[t - from] = m < 0 || m > interior ? Double.NEGATIVE_INFINITY :
+                    logFactorial(interior) - logFactorial(m) - logFactorial(interior - m) - t*logTilt;
+            max = Math.max(max, logWeights[t - from]);
+        }
+        double[] weights = new double[logWeights.length];
+        for(int i = 0; i < weights.length; ++i){
+            weights[i] = Math.exp(logWeights[i] - max);
+        }
+        return new WeightVector(weights, from);
+    }
+
+    /**
+     * Returns natural logarithm of n!, from a table for small n
+     * and from Stirling's series otherwise.
+     * @param n A non-negative number.
+     * @return ln(n!).
+     */
+    private static double logFactorial(int n){
+        if(n < LOG_FACTORIALS.length){
+            return LOG_FACTORIALS[n];
+        }
+        double x = n;
+        return x*Math.log(x) - x + 0.5*Math.log(2*Math.PI*x) + 1/(12*x) - 1/(360*x*x*x);
+    }
+
+    /**
+     * Maximal number of search nodes spent on counting a single component.
+     */
+    static final long NODE_LIMIT = 1 << 22;
+
+    /**
+     * Bound of the logarithm of the tilt.
+     */
+    private static final double MAX_LOG_TILT = 50;
+    /**
+     * Steps of every bisection.
+     */
+    private static final int BISECTION_STEPS = 60;
+    /**
+     * Logarithms of small factorials.
+     */
+    private static final double[] LOG_FACTORIALS = new double[256];
+
+    static{
+        for(int n = 1; n < LOG_FACTORIALS.length; ++n){
+            LOG_FACTORIALS[n] = LOG_FACTORIALS[n - 1] + Math.log(n);
+        }
+    }
+
+    /**
+     * Solver holding the visible board.
+     */
+    private Solver solver;
+    /**
+     * Size of a board.
+     */
+    private int width, height;
+    /**
+     * Component of every frontier field or null.
+     */
+    private FrontierComponent[] componentOf;
+    /**
+     * Index of every frontier field within its component.
+     */
+    private int[] localIndex;
+    /**
+     * Current components.
+     */
+    private LinkedHashSet<FrontierComponent> components;
+    /**
+     * Fields which may start new components.
+     */
+    private CellQueue seeds;
+    /**
+     * Mine probability of fields not adjacent to any number.
+     */
+    private double interiorProbability;
+    /**
+     * Half-width of the confidence interval of the interior probability.
+     */
+    private double interiorError;
+    /**
+     * Number of frontier fields.
+     */
+    private int frontierSize;
+    /**
+     * True if all components were counted.
+     */
+    private boolean exact;
+    /**
+     * Number of components counted by the last update.
+     */
+    private int lastCountedComponents;
+}
@@ -0,0 +1,183 @@
+package minesweeper.solver;
+
+/**
+ * Sums weights of layouts of a frontier component, separately for every
+ * number of mines, and for every field the weights of layouts with a mine
+ * in it. Weights are given as logarithms and kept relative to a common
+ * scale, so that weights of very different magnitudes do not overflow.
+ * Per field sums are kept only for the range of mine counts seen so far.
+ */
+class SampleAccumulator {
+    /**
+     * Creates an empty accumulator.
+     * @param size Number of fields of the component.
+     */
+    SampleAccumulator(int size){
+        this.size = size;
+        counts = new double[size + 1];
+        cellCounts = new double[size][0];
+        logScale = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Adds a layout.
+     * @param mines Number of mines in the layout.
+     * @param logWeight Natural logarithm of the weight of the layout.
+     * @param assignment Fields containing a mine.
+     */
+    void add(int mines, double logWeight, boolean[] assignment){
+        ++samples;
+        if(logWeight > logScale + RESCALE_THRESHOLD){
+            rescale(logWeight);
+        }
+        double weight = Math.exp(logWeight - logScale);
+        ensureWindow(mines);
+        counts[mines] += weight;
+        int column = mines - offset;
+        for(int i = 0; i < size; ++i){
+            if(assignment[i]){
+                cellCounts[i][column] += weight;
+            }
+        }
+    }
+
+    /**
+     * Counts a probe which did not end in a valid layout.
+     */
+    void addFailure(){
+        ++samples;
+    }
+
+    /**
+     * Adds all layouts from another accumulator of the same component.
+     * @param other The other accumulator.
+     */
+    void addAll(SampleAccumulator other){
+        samples += other.samples;
+        if(other.logScale == Double.NEGATIVE_INFINITY){
+            return;
+        }
+        if(other.logScale > logScale){
+            rescale(other.logScale);
+        }
+        double factor = Math.exp(other.logScale - logScale);
+        for(int k = 0; k < other.window; ++k){
+            int mines = other.offset + k;
+            if(other.counts[mines] == 0){
+                continue;
+            }
+            ensureWindow(mines);
+            counts[mines] += factor*other.counts[mines];
+            for(int i = 0; i < size; ++i){
+                cellCounts[i][mines - offset] += factor*other.cellCounts[i][k];
+            }
+        }
+    }
+
+    /**
+     * Returns summed weights for every number of mines.
+     * @return Weights relative to the current scale.
+     */
+    double[] getCounts(){
+        return counts;
+    }
+
+    /**
+     * Returns summed weights of layouts with a mine in a field.
+     * @param i Index of a field within the component.
+     * @return Weights for numbers of mines starting from getOffset.
+     */
+    double[] getCellCounts(int i){
+        return cellCounts[i];
+    }
+
+    /**
+     * Returns the smallest number of mines covered by per field sums.
+     * @return The offset.
+     */
+    int getOffset(){
+        return offset;
+    }
+
+    /**
+     * Returns number of added layouts and failures.
+     * @return Number of samples.
+     */
+    long getSamples(){
+        return samples;
+    }
+
+    /**
+     * Changes the common scale to a larger one.
+     * @param newLogScale Natural logarithm of the new scale.
+     */
+    private void rescale(double newLogScale){
+        double factor = Math.exp(logScale - newLogScale);
+        for(int k = 0; k < window; ++k){
+            counts[offset + k] *= factor;
+            for(int i = 0; i < size; ++i){
+                cellCounts[i][k] *= factor;
+            }
+        }
+        logScale = newLogScale;
+    }
+
+    /**
+     * Grows per field sums so that they cover a number of mines.
+     * @param mines Number of mines.
+     */
+    private void ensureWindow(int mines){
+        if(window == 0){
+            offset = mines;
+            window = 1;
+            for(int i = 0; i < size; ++i){
+                cellCounts[i] = new double[1];
+            }
+            return;
+        }
+        if(mines >= offset && mines < offset + window){
+            return;
+        }
+
+        int newOffset = Math.min(offset, mines);
+        int newWindow = Math.max(offset + window, mines + 1) - newOffset;
+        for(int i = 0; i < size; ++i){
+            double[] row = new double[newWindow];
+            System.arraycopy(cellCounts[i], 0, row, offset - newOffset, window);
+            cellCounts[i] = row;
+        }
+        offset = newOffset;
+        window = newWindow;
+    }
+
+    /**
+     * Weights are rescaled when a new weight exceeds the scale by this logarithm.
+     */
+    private static final double RESCALE_THRESHOLD = 64;
+
+    /**
+     * Number of fields of the component.
+     */
+    private int size;
+    /**
+     * Summed weights for every number of mines.
+     */
+    private double[] counts;
+    /**
+     * Summed weights of layouts with a mine in a field, for numbers of mines
+     * from offset to offset + window - 1.
+     */
+    private double[][] cellCounts;
+    /**
+     * Range of numbers of mines covered by cellCounts.
+     */
+    private int offset, window;
+    /**
+     * Natural logarithm of the common scale of all sums.
+     */
+    private double logScale;
+    /**
+     * Number of added layouts and failures.
+     */
+    private long samples;
+}
@@ -0,0 +1,714 @@
+package minesweeper.solver;
+
+import minesweeper.model.GameState;
+import minesweeper.model.MarkChange;
+import minesweeper.model.Model;
+import minesweeper.model.ReverseChange;
+import minesweeper.model.exceptions.WrongBoardParametersException;
+
+import java.util.Arrays;
+
+/**
+ * Deterministic solver working only on the state visible to a player.
+ * It keeps its own copy of the visible board, updated from every
+ * ReverseChange and MarkChange. Only numbers whose neighbourhood changed
+ * are queued and examined, so the work done after a move is proportional
+ * to the number of changed fields, not to the size of the board.
+ *
+ * Three kinds of deductions are used:
+ * - a single number whose remaining mines are 0 or equal to the number
+ *   of its unknown neighbours,
+ * - a pair of adjacent numbers, looked up in the PatternTable,
+ * - a pair of numbers at most two fields apart, which share some unknown
+ *   fields (the subset rule, including the 1-2 pattern).
+ * When nothing else is left, the total number of bombs is used as well.
+ *
+ * Marks placed by the player are remembered, but never trusted in deductions.
+ */
+public class Solver {
+    /**
+     * Creates a solver for an untouched board.
+     * @param width Width of a board.
+     * @param height Height of a board.
+     * @param bombs Bombs in a board.
+     */
+    public Solver(int width, int height, int bombs){
+        if(width <= 0 || height <= 0 || (long)width*height > Integer.MAX_VALUE ||
+                bombs < 0 || bombs > width*height){
+            throw new WrongBoardParametersException("Cannot create a board with given parameters.");
+        }
+
+        this.width = width;
+        this.height = height;
+        this.bombs = bombs;
+        int size = width*height;
+        cells = new byte[size];
+        Arrays.fill(cells, (byte)UNKNOWN);
+        remaining = new byte[size];
+        unknowns = new byte[size];
+        queued = new long[(size + 63) >>> 6];
+        marked = new long[(size + 63) >>> 6];
+        unknownCells = size;
+        queue = new CellQueue();
+        safeCells = new CellQueue();
+    }
+
+    /**
+     * Creates a solver for the current state of a game. The board is
+     * scanned once, later changes should be passed to apply methods.
+     * @param model Model of a game.
+     */
+    public Solver(Model model){
+        this(model.getWidth(), model.getHeight(), model.getBombs());
+        for(int y = 0; y < height; ++y){
+            for(int x = 0; x < width; ++x){
+                int value = model.getVisibleValue(x, y);
+                if(value >= 0){
+                    reveal(x, y, value);
+                }
+                else if(value == Model.FIELD_DETONATED){
+                    setMine(y*width + x);
+                }
+                else if(value == Model.FIELD_MARKED){
+                    setBit(marked, y*width + x);
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates the visible board after a reverse or a chord.
+     * @param reverseChange Result of the operation.
+     */
+    public void apply(ReverseChange reverseChange){
+        if(reverseChange.gameStateChanged() && reverseChange.getGameState() == GameState.BOMB_DETONATED){
+            int index = reverseChange.getDetonatedY()*width + reverseChange.getDetonatedX();
+            if(cells[index] == UNKNOWN){
+                setMine(index);
+            }
+            return;
+        }
+        reverseChange.forEach(this::reveal);
+    }
+
+    /**
+     * Updates the visible board after marking a field.
+     * @param x X-coordinate of a field.
+     * @param y Y-coordinate of a field.
+     * @param markChange Result of the operation.
+     */
+    public void apply(int x, int y, MarkChange markChange){
+        if(!markChange.isStateChanged()){
+            return;
+        }
+        if(markChange.getState() == MarkChange.State.MARKED){
+            setBit(marked, y*width + x);
+        }
+        else{
+            marked[(y*width + x) >>> 6] &= ~(1L << (y*width + x));
+        }
+    }
+
+    /**
+     * Updates the visible board after a field was reversed.
+     * @param x X-coordinate of a field.
+     * @param y Y-coordinate of a field.
+     * @param value Value of the field.
+     */
+    public void reveal(int x, int y, int value){
+        int index = y*width + x;
+        int previous = cells[index];
+        if(previous >= 0 || previous == MINE){
+            return;
+        }
+
+        cells[index] = (byte)value;
+        int left = Math.max(x - 1, 0), right = Math.min(x + 1, width - 1);
+        int top = Math.max(y - 1, 0), bottom = Math.min(y + 1, height - 1);
+        int mines = 0, unknown = 0;
+        for(int i = top; i <= bottom; ++i){
+            for(int j = left; j <= right; ++j){
+                int neighbour = i*width + j;
+                int cell = cells[neighbour];
+                if(cell == MINE){
+                    ++mines;
+                }
+                else if(cell == UNKNOWN){
+                    ++unknown;
+                }
+                else if(cell >= 0 && neighbour != index && previous == UNKNOWN){
+                    --unknowns[neighbour];
+                    enqueue(neighbour);
+                }
+            }
+        }
+        if(previous == UNKNOWN){
+            --unknownCells;
+        }
+        remaining[index] = (byte)(value - mines);
+        unknowns[index] = (byte)unknown;
+        ++revealedCells;
+        enqueue(index);
+        recordChange(index);
+    }
+
+    /**
+     * Runs deductions until no more can be made from the current state.
+     * @return Number of fields resolved as safe or as mines by this call.
+     */
+    public int solve(){
+        int resolvedBefore = resolvedCells;
+        do{
+            while(!queue.isEmpty()){
+                int index = queue.take();
+                queued[index >>> 6] &= ~(1L << index);
+                if(unknowns[index] == 0){
+                    continue;
+                }
+                if(remaining[index] == 0){
+                    resolveNeighbours(index, SAFE);
+                }
+                else if(remaining[index] == unknowns[index]){
+                    resolveNeighbours(index, MINE);
+                }
+                else if(!applyPatterns(index)){
+                    applySubsetRule(index);
+                }
+            }
+        } while(applyGlobalRule());
+        return resolvedCells - resolvedBefore;
+    }
+
+    /**
+     * Returns true if some field was resolved as safe and not reversed yet.
+     * @return True if a safe field is known.
+     */
+    public boolean hasSafeCell(){
+        if(pendingSafeCell >= 0 && cells[pendingSafeCell] == SAFE){
+            return true;
+        }
+        pendingSafeCell = -1;
+        while(!safeCells.isEmpty()){
+            int index = safeCells.take();
+            if(cells[index] == SAFE){
+                pendingSafeCell = index;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Takes a field resolved as safe which was not reversed yet.
+     * @return Linear index y*width + x of the field or -1 if no such field is known.
+     */
+    public int nextSafeCell(){
+        if(!hasSafeCell()){
+            return -1;
+        }
+        int index = pendingSafeCell;
+        pendingSafeCell = -1;
+        return index;
+    }
+
+    /**
+     * Returns a field resolved as safe which was not reversed yet, without taking it.
+     * @return Linear index y*width + x of the field or -1 if no such field is known.
+     */
+    int peekSafeCell(){
+        return hasSafeCell() ? pendingSafeCell : -1;
+    }
+
+    /**
+     * Returns what the solver knows about a field.
+     * @param x X-coordinate of a field.
+     * @param y Y-coordinate of a field.
+     * @return Value of a reversed field (0-8), UNKNOWN, SAFE or MINE.
+     */
+    public int getCell(int x, int y){
+        return cells[y*width + x];
+    }
+
+    /**
+     * Returns true if the player marked a field.
+     * @param x X-coordinate of a field.
+     * @param y Y-coordinate of a field.
+     * @return True if the field is marked.
+     */
+    public boolean isMarked(int x, int y){
+        int index = y*width + x;
+        return (marked[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Returns width of a board.
+     * @return Width of a board.
+     */
+    public int getWidth(){
+        return width;
+    }
+
+    /**
+     * Returns height of a board.
+     * @return Height of a board.
+     */
+    public int getHeight(){
+        return height;
+    }
+
+    /**
+     * Returns bombs in a board.
+     * @return Bombs in a board.
+     */
+    public int getBombs(){
+        return bombs;
+    }
+
+    /**
+     * Returns number of fields resolved as mines.
+     * @return Number of known mines.
+     */
+    public int getKnownMines(){
+        return knownMines;
+    }
+
+    /**
+     * Returns number of fields which are neither reversed nor resolved.
+     * @return Number of unknown fields.
+     */
+    public int getUnknownCells(){
+        return unknownCells;
+    }
+
+    /**
+     * Returns number of fields resolved as safe or as mines so far.
+     * @return Number of resolved fields.
+     */
+    public int getResolvedCells(){
+        return resolvedCells;
+    }
+
+    /**
+     * Returns number of reversed fields seen so far.
+     * @return Number of reversed fields.
+     */
+    public int getRevealedCells(){
+        return revealedCells;
+    }
+
+    /**
+     * Starts recording fields which are reversed or resolved, so that
+     * analyses built on top of the solver can update only what changed.
+     */
+    void trackChanges(){
+        if(changes == null){
+            changes = new CellQueue();
+        }
+    }
+
+    /**
+     * Returns true if a recorded change was not taken yet.
+     * @return True if there is a change to take.
+     */
+    boolean hasChanges(){
+        return changes != null && !changes.isEmpty();
+    }
+
+    /**
+     * Takes the oldest recorded change.
+     * @return Linear index of a reversed or resolved field.
+     */
+    int takeChange(){
+        return changes.take();
+    }
+
+    /**
+     * Returns the state of a field.
+     * @param index Linear index of a field.
+     * @return Value of a reversed field (0-8), UNKNOWN, SAFE or MINE.
+     */
+    int getCell(int index){
+        return cells[index];
+    }
+
+    /**
+     * Returns mines around a reversed field which are not resolved yet.
+     * @param index Linear index of a reversed field.
+     * @return Number of remaining mines.
+     */
+    int getRemaining(int index){
+        return remaining[index];
+    }
+
+    /**
+     * Returns unknown fields around a reversed field.
+     * @param index Linear index of a reversed field.
+     * @return Number of unknown neighbours.
+     */
+    int getUnknownNeighbours(int index){
+        return unknowns[index];
+    }
+
+    /**
+     * Resolves all unknown neighbours of a field.
+     * @param index Linear index of a field.
+     * @param state SAFE or MINE.
+     */
+    private void resolveNeighbours(int index, int state){
+        int x = index % width, y = index / width;
+        int left = Math.max(x - 1, 0), right = Math.min(x + 1, width - 1);
+        int top = Math.max(y - 1, 0), bottom = Math.min(y + 1, height - 1);
+        for(int i = top; i <= bottom; ++i){
+            for(int j = left; j <= right; ++j){
+                int neighbour = i*width + j;
+                if(cells[neighbour] == UNKNOWN){
+                    resolve(neighbour, state);
+                }
+            }
+        }
+    }
+
+    /**
+     * Looks up windows of a number paired with every orthogonally adjacent
+     * number which has unknown neighbours, until some fields are resolved.
+     * @param a Linear index of a reversed field with unknown neighbours.
+     * @return True if any field was resolved.
+     */
+    private boolean applyPatterns(int a){
+        int ax = a % width, ay = a / width;
+        return (ax + 1 < width && isOpenNumber(a + 1) && applyPattern(a, ax, ay, true)) ||
+                (ax > 0 && isOpenNumber(a - 1) && applyPattern(a, ax - 1, ay, true)) ||
+                (ay + 1 < height && isOpenNumber(a + width) && applyPattern(a, ax, ay, false)) ||
+                (ay > 0 && isOpenNumber(a - width) && applyPattern(a, ax, ay - 1, false));
+    }
+
+    /**
+     * Returns true if a field is reversed and has unknown neighbours.
+     * @param index Linear index of a field.
+     * @return True if the field is a number which can take part in deductions.
+     */
+    private boolean isOpenNumber(int index){
+        return cells[index] >= 0 && unknowns[index] > 0;
+    }
+
+    /**
+     * Resolves fields deduced from a pair of adjacent numbers with a single
+     * table lookup. The window of a vertical pair is read transposed.
+     * @param a Linear index of the number which is queued again if anything is resolved.
+     * @param x X-coordinate of the left or upper number of the pair.
+     * @param y Y-coordinate of the left or upper number of the pair.
+     * @param horizontal True if the second number is right of the first, false if below.
+     * @return True if any field was resolved.
+     */
+    private boolean applyPattern(int a, int x, int y, boolean horizontal){
+        int first = y*width + x, second = horizontal ? first + 1 : first + width;
+        if(remaining[first] < 0 || remaining[second] < 0){
+            return false;
+        }
+        int unknown = 0;
+        int[] window = patternWindow;
+        for(int field = 0; field < PatternTable.FIELDS; ++field){
+            int index = windowField(x, y, horizontal, field);
+            window[field] = index;
+            if(index >= 0 && cells[index] == UNKNOWN){
+                unknown |= 1 << field;
+            }
+        }
+
+        int entry = patternTable.lookup(PatternTable.key(unknown, remaining[first], remaining[second]));
+        if(entry == 0){
+            return false;
+        }
+        for(int field = 0; field < PatternTable.FIELDS; ++field){
+            if((entry & (1 << field)) != 0){
+                resolve(window[field], SAFE);
+            }
+            else if((entry & (1 << (field + PatternTable.FIELDS))) != 0){
+                resolve(window[field], MINE);
+            }
+        }
+        enqueue(a);
+        return true;
+    }
+
+    /**
+     * Returns the field of the board at a field of a window of a pair.
+     * @param x X-coordinate of the left or upper number of the pair.
+     * @param y Y-coordinate of the left or upper number of the pair.
+     * @param horizontal True for a horizontal pair.
+     * @param field Index of the field in PatternTable.WINDOW.
+     * @return Linear index of the field or -1 if it is outside the board.
+     */
+    private int windowField(int x, int y, boolean horizontal, int field){
+        int column = PatternTable.WINDOW[field][0], row = PatternTable.WINDOW[field][1];
+        int i = horizontal ? x - 1 + column : x - 1 + row;
+        int j = horizontal ? y - 1 + row : y - 1 + column;
+        return i >= 0 && i < width && j >= 0 && j < height ? j*width + i : -1;
+    }
+
+    /**
+     * Compares a number with every number at most two fields away which
+     * shares unknown neighbours with it. If A and B are the unknown fields
+     * seen only by the first and only by the second number, then
+     * mines(B) - mines(A) equals the difference of their remaining mines.
+     * When the difference equals |B|, all of B are mines and all of A are safe
+     * (and symmetrically), which also covers the case of A being empty.
+     * @param a Linear index of a reversed field with unknown neighbours.
+     */
+    private void applySubsetRule(int a){
+        int ax = a % width, ay = a / width;
+        for(int by = Math.max(ay - 2, 0); by <= Math.min(ay + 2, height - 1); ++by){
+            for(int bx = Math.max(ax - 2, 0); bx <= Math.min(ax + 2, width - 1); ++bx){
+                int b = by*width + bx;
+                if(b == a || cells[b] < 0 || unknowns[b] == 0){
+                    continue;
+                }
+
+                int shared = countSharedUnknowns(ax, ay, bx, by);
+                if(shared == 0){
+                    continue;
+                }
+                int onlyA = unknowns[a] - shared, onlyB = unknowns[b] - shared;
+                int difference = remaining[b] - remaining[a];
+                if(onlyA + onlyB == 0){
+                    continue;
+                }
+                if(difference == onlyB){
+                    resolveExclusive(bx, by, ax, ay, MINE);
+                    resolveExclusive(ax, ay, bx, by, SAFE);
+                    enqueue(a);
+                    return;
+                }
+                if(-difference == onlyA){
+                    resolveExclusive(ax, ay, bx, by, MINE);
+                    resolveExclusive(bx, by, ax, ay, SAFE);
+                    enqueue(a);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts unknown fields adjacent to both given fields.
+     * @param ax X-coordinate of the first field.
+     * @param ay Y-coordinate of the first field.
+     * @param bx X-coordinate of the second field.
+     * @param by Y-coordinate of the second field.
+     * @return Number of shared unknown neighbours.
+     */
+    private int countSharedUnknowns(int ax, int ay, int bx, int by){
+        int left = Math.max(Math.max(ax, bx) - 1, 0), right = Math.min(Math.min(ax, bx) + 1, width - 1);
+        int top = Math.max(Math.max(ay, by) - 1, 0), bottom = Math.min(Math.min(ay, by) + 1, height - 1);
+        int shared = 0;
+        for(int i = top; i <= bottom; ++i){
+            for(int j = left; j <= right; ++j){
+                if(cells[i*width + j] == UNKNOWN){
+                    ++shared;
+                }
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Resolves unknown neighbours of the first field which are not
+     * adjacent to the second field.
+     * @param x X-coordinate of the first field.
+     * @param y Y-coordinate of the first field.
+     * @param otherX X-coordinate of the second field.
+     * @param otherY Y-coordinate of the second field.
+     * @param state SAFE or MINE.
+     */
+    private void resolveExclusive(int x, int y, int otherX, int otherY, int state){
+        int left = Math.max(x - 1, 0), right = Math.min(x + 1, width - 1);
+        int top = Math.max(y - 1, 0), bottom = Math.min(y + 1, height - 1);
+        for(int i = top; i <= bottom; ++i){
+            for(int j = left; j <= right; ++j){
+                boolean shared = Math.abs(j - otherX) <= 1 && Math.abs(i - otherY) <= 1;
+                if(!shared && cells[i*width + j] == UNKNOWN){
+                    resolve(i*width + j, state);
+                }
+            }
+        }
+    }
+
+    /**
+     * Resolves all unknown fields if the number of bombs left is 0
+     * or equal to the number of unknown fields. This scans the whole
+     * board, but it can happen only once per game.
+     * @return True if anything was resolved.
+     */
+    private boolean applyGlobalRule(){
+        int minesLeft = bombs - knownMines;
+        if(unknownCells == 0 || (minesLeft != 0 && minesLeft != unknownCells)){
+            return false;
+        }
+        int state = minesLeft == 0 ? SAFE : MINE;
+        for(int index = 0; index < cells.length; ++index){
+            if(cells[index] == UNKNOWN){
+                resolve(index, state);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Resolves an unknown field.
+     * @param index Linear index of the field.
+     * @param state SAFE or MINE.
+     */
+    private void resolve(int index, int state){
+        if(state == MINE){
+            setMine(index);
+        }
+        else{
+            cells[index] = SAFE;
+            --unknownCells;
+            ++resolvedCells;
+            safeCells.add(index);
+            recordChange(index);
+            updateNeighbours(index, false);
+        }
+    }
+
+    /**
+     * Resolves an unknown field as a mine.
+     * @param index Linear index of the field.
+     */
+    private void setMine(int index){
+        cells[index] = MINE;
+        --unknownCells;
+        ++knownMines;
+        ++resolvedCells;
+        recordChange(index);
+        updateNeighbours(index, true);
+    }
+
+    /**
+     * Updates and queues reversed neighbours of a field which stopped being unknown.
+     * @param index Linear index of the field.
+     * @param mine True if the field is a mine.
+     */
+    private void updateNeighbours(int index, boolean mine){
+        int x = index % width, y = index / width;
+        int left = Math.max(x - 1, 0), right = Math.min(x + 1, width - 1);
+        int top = Math.max(y - 1, 0), bottom = Math.min(y + 1, height - 1);
+        for(int i = top; i <= bottom; ++i){
+            for(int j = left; j <= right; ++j){
+                int neighbour = i*width + j;
+                if(cells[neighbour] >= 0){
+                    --unknowns[neighbour];
+                    if(mine){
+                        --remaining[neighbour];
+                    }
+                    enqueue(neighbour);
+                }
+            }
+        }
+    }
+
+    /**
+     * Records a field which was reversed or resolved if changes are tracked.
+     * @param index Linear index of the field.
+     */
+    private void recordChange(int index){
+        if(changes != null){
+            changes.add(index);
+        }
+    }
+
+    /**
+     * Queues a reversed field for deductions unless it is already queued.
+     * @param index Linear index of the field.
+     */
+    private void enqueue(int index){
+        if((queued[index >>> 6] & (1L << index)) == 0){
+            setBit(queued, index);
+            queue.add(index);
+        }
+    }
+
+    /**
+     * Sets a bit in a bitset.
+     * @param bits The bitset.
+     * @param index Index of the bit.
+     */
+    private static void setBit(long[] bits, int index){
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    /**
+     * States of fields which are not reversed.
+     */
+    public static final int UNKNOWN = -1, SAFE = -2, MINE = -3;
+
+    /**
+     * Size of a board.
+     */
+    private int width, height;
+    /**
+     * Bombs in a board.
+     */
+    private int bombs;
+    /**
+     * Values of reversed fields or states of other fields.
+     */
+    private byte[] cells;
+    /**
+     * Mines not resolved yet around every reversed field.
+     */
+    private byte[] remaining;
+    /**
+     * Unknown neighbours of every reversed field.
+     */
+    private byte[] unknowns;
+    /**
+     * Bits of fields waiting in the queue.
+     */
+    private long[] queued;
+    /**
+     * Bits of fields marked by the player.
+     */
+    private long[] marked;
+    /**
+     * Reversed fields waiting for deductions.
+     */
+    private CellQueue queue;
+    /**
+     * Fields resolved as safe, some of them may be reversed already.
+     */
+    private CellQueue safeCells;
+    /**
+     * Fields reversed or resolved since changes were last taken or null if not tracked.
+     */
+    private CellQueue changes;
+    /**
+     * Safe field found by hasSafeCell and not taken yet or -1.
+     */
+    private int pendingSafeCell = -1;
+    /**
+     * Number of fields neither reversed nor resolved.
+     */
+    private int unknownCells;
+    /**
+     * Number of fields resolved as mines.
+     */
+    private int knownMines;
+    /**
+     * Deductions of pairs of adjacent numbers.
+     */
+    private PatternTable patternTable = PatternTable.getInstance();
+    /**
+     * Board fields of the window looked up last.
+     */
+    private int[] patternWindow = new int[PatternTable.FIELDS];
+    /**
+     * Number of fields resolved so far.
+     */
+    private int resolvedCells;
+    /**
+     * Number of reversed fields seen so far.
+     */
+    private int revealedCells;
+}
@@ -0,0 +1,104 @@
+package minesweeper.solver;
+
+/**
+ * Non-negative weights indexed by a number of mines, stored only over the
+ * range where they are not negligible. Weights are scaled so that the largest
+ * is 1 and weights smaller than TRIM times the largest are dropped from both
+ * ends of the range, which keeps convolutions of many components cheap.
+ */
+class WeightVector {
+    /**
+     * Creates a vector. The array is rescaled and trimmed in place.
+     * @param values Weights starting from the given index.
+     * @param start Index of the first weight.
+     */
+    WeightVector(double[] values, int start){
+        double max = 0;
+        for(double value : values){
+            max = Math.max(max, value);
+        }
+        int from = 0, to = values.length;
+        if(max > 0){
+            while(values[from] < TRIM*max){
+                ++from;
+            }
+            while(values[to - 1] < TRIM*max){
+                --to;
+            }
+        }
+        else{
+            to = 0;
+        }
+        this.values = new double[to - from];
+        for(int i = from; i < to; ++i){
+            this.values[i - from] = values[i] / max;
+        }
+        this.start = start + from;
+    }
+
+    /**
+     * Returns a weight.
+     * @param index Number of mines.
+     * @return The weight, 0 outside the stored range.
+     */
+    double get(int index){
+        int i = index - start;
+        return i >= 0 && i < values.length ? values[i] : 0;
+    }
+
+    /**
+     * Returns the first index of the stored range.
+     * @return The first index.
+     */
+    int getStart(){
+        return start;
+    }
+
+    /**
+     * Returns the last index of the stored range.
+     * @return The last index, smaller than getStart if the vector is empty.
+     */
+    int getEnd(){
+        return start + values.length - 1;
+    }
+
+    /**
+     * Returns true if all weights are 0.
+     * @return True if nothing is stored.
+     */
+    boolean isEmpty(){
+        return values.length == 0;
+    }
+
+    /**
+     * Convolves the vector with another one.
+     * @param other The other vector.
+     * @return Weights of sums of indices.
+     */
+    WeightVector convolve(WeightVector other){
+        if(isEmpty() || other.isEmpty()){
+            return new WeightVector(new double[0], 0);
+        }
+        double[] result = new double[values.length + other.values.length - 1];
+        for(int i = 0; i < values.length; ++i){
+            for(int j = 0; j < other.values.length; ++j){
+                result[i + j] += values[i]*other.values[j];
+            }
+        }
+        return new WeightVector(result, start + other.start);
+    }
+
+    /**
+     * Weights relatively smaller than this are dropped.
+     */
+    private static final double TRIM = 1e-40;
+
+    /**
+     * Stored weights.
+     */
+    private double[] values;
+    /**
+     * Index of the first stored weight.
+     */
+    private int start;
+}
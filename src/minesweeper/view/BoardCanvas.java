@@ -0,0 +1,502 @@
+package minesweeper.view;
+
+import javafx.application.Platform;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.stage.Screen;
+import minesweeper.model.Model;
+import minesweeper.view.exceptions.UnknownFieldTypeException;
+
+
+/**
+ * Game board drawn onto a single canvas covering only the visible part of
+ * the board, the viewport. Fields are not stored by the view at all: the
+ * canvas asks a field source for every field it draws, so memory and the
+ * cost of a redraw depend on the size of the window and not on the size of
+ * the board, and a board without borders is drawn the same way as a finite one.
+ * The viewport is moved by dragging the board or scrolling, and zoomed with
+ * the control key held while scrolling. Changed fields are collected as dirty
+ * and redrawn together once the current event is handled, and fields outside
+ * the viewport are not collected at all.
+ */
+class BoardCanvas {
+    /**
+     * Creates a board.
+     * @param width Width of a board or View.ENDLESS.
+     * @param height Height of a board or View.ENDLESS.
+     * @param scale Number of pixels of the screen per pixel of the scene.
+     * @param source Source of what a player sees in every field.
+     */
+    BoardCanvas(int width, int height, double scale, View.FieldSource source){
+        this.width = width;
+        this.height = height;
+        this.scale = scale;
+        this.source = source;
+        bounded = width != View.ENDLESS;
+        dirty = new long[0];
+        dirtyFields = new int[0];
+
+        double maxWidth = Screen.getPrimary().getVisualBounds().getWidth()*SCREEN_FRACTION;
+        double maxHeight = Screen.getPrimary().getVisualBounds().getHeight()*SCREEN_FRACTION;
+        zoom = DEFAULT_ZOOM;
+        if(bounded){
+            while(zoom > MIN_INITIAL_ZOOM && (width*ZOOM_SIZES[zoom] > maxWidth || height*ZOOM_SIZES[zoom] > maxHeight)){
+                --zoom;
+            }
+        }
+        fieldSize = ZOOM_SIZES[zoom];
+        atlas = SpriteAtlas.get(fieldSize, scale);
+
+        canvas = new Canvas();
+        graphics = canvas.getGraphicsContext2D();
+        canvas.setOnMousePressed(this::press);
+        canvas.setOnMouseDragged(this::drag);
+        canvas.setOnScroll(this::scroll);
+        pane = new Pane(canvas);
+        pane.setMinSize(MIN_VIEWPORT, MIN_VIEWPORT);
+        pane.setPrefSize(bounded ? Math.min(width*fieldSize, maxWidth) : maxWidth,
+                bounded ? Math.min(height*fieldSize, maxHeight) : maxHeight);
+        pane.widthProperty().addListener((observable, oldValue, newValue) -> resize());
+        pane.heightProperty().addListener((observable, oldValue, newValue) -> resize());
+    }
+
+    /**
+     * Returns the node to put into the scene. The canvas always fills it,
+     * so it can be given any size by the layout.
+     * @return Pane holding the canvas.
+     */
+    Pane getNode(){
+        return pane;
+    }
+
+    /**
+     * Returns the atlas the board is currently drawn from.
+     * @return Atlas with fields of the size of fields of the board.
+     */
+    SpriteAtlas getAtlas(){
+        return atlas;
+    }
+
+    /**
+     * Returns the field at a horizontal position on the canvas.
+     * @param canvasX X-coordinate relative to the canvas.
+     * @return X-coordinate of the field, possibly outside a finite board.
+     */
+    int getFieldX(double canvasX){
+        return (int)Math.floor((canvasX + originX) / fieldSize);
+    }
+
+    /**
+     * Returns the field at a vertical position on the canvas.
+     * @param canvasY Y-coordinate relative to the canvas.
+     * @return Y-coordinate of the field, possibly outside a finite board.
+     */
+    int getFieldY(double canvasY){
+        return (int)Math.floor((canvasY + originY) / fieldSize);
+    }
+
+    /**
+     * Checks if a position on the canvas is over a field of the board.
+     * A finite board smaller than the viewport is centered in it.
+     * @param canvasX X-coordinate relative to the canvas.
+     * @param canvasY Y-coordinate relative to the canvas.
+     * @return True if the position is over a field.
+     */
+    boolean contains(double canvasX, double canvasY){
+        if(!bounded){
+            return true;
+        }
+        int x = getFieldX(canvasX), y = getFieldY(canvasY);
+        return x >= 0 && x < width && y >= 0 && y < height;
+    }
+
+    /**
+     * Redraws a field from the field source once the current event is handled.
+     * @param x X-coordinate.
+     * @param y Y-coordinate.
+     */
+    void update(int x, int y){
+        markDirty(x, y);
+    }
+
+    /**
+     * Highlights a field with a frame of a color, removing the previous highlight.
+     * @param x X-coordinate.
+     * @param y Y-coordinate.
+     * @param color Color of the frame.
+     */
+    void highlight(int x, int y, Color color){
+        clearHighlight();
+        highlighted = true;
+        highlightX = x;
+        highlightY = y;
+        highlightColor = color;
+        markDirty(x, y);
+    }
+
+    /**
+     * Removes the highlight of a field.
+     */
+    void clearHighlight(){
+        if(highlighted){
+            highlighted = false;
+            markDirty(highlightX, highlightY);
+        }
+    }
+
+    /**
+     * Remembers where dragging of the board starts.
+     * @param event Mouse event of the canvas.
+     */
+    private void press(MouseEvent event){
+        pressX = event.getX();
+        pressY = event.getY();
+        pressOriginX = originX;
+        pressOriginY = originY;
+    }
+
+    /**
+     * Moves the viewport together with the dragged board.
+     * @param event Mouse event of the canvas.
+     */
+    private void drag(MouseEvent event){
+        moveTo(pressOriginX - (event.getX() - pressX), pressOriginY - (event.getY() - pressY));
+    }
+
+    /**
+     * Moves the viewport by the scrolled distance, or zooms around the
+     * cursor if the control key is held.
+     * @param event Scroll event of the canvas.
+     */
+    private void scroll(ScrollEvent event){
+        if(event.isControlDown()){
+            if(event.getDeltaY() != 0){
+                zoom(event.getDeltaY() > 0 ? 1 : -1, event.getX(), event.getY());
+            }
+        }
+        else{
+            moveTo(originX - event.getDeltaX(), originY - event.getDeltaY());
+        }
+    }
+
+    /**
+     * Changes the size of fields, keeping the field under a point of the canvas in place.
+     * @param steps Number of zoom levels to zoom in, negative to zoom out.
+     * @param canvasX X-coordinate of the point relative to the canvas.
+     * @param canvasY Y-coordinate of the point relative to the canvas.
+     */
+    private void zoom(int steps, double canvasX, double canvasY){
+        int newZoom = Math.max(0, Math.min(ZOOM_SIZES.length - 1, zoom + steps));
+        if(newZoom == zoom){
+            return;
+        }
+        double ratio = ZOOM_SIZES[newZoom] / (double)fieldSize;
+        zoom = newZoom;
+        fieldSize = ZOOM_SIZES[zoom];
+        atlas = SpriteAtlas.get(fieldSize, scale);
+        moveTo((originX + canvasX)*ratio - canvasX, (originY + canvasY)*ratio - canvasY);
+        redrawAll();
+    }
+
+    /**
+     * Gives the canvas the size of its pane. An endless board is centered
+     * on its origin when it gets its first size.
+     */
+    private void resize(){
+        canvas.setWidth(pane.getWidth());
+        canvas.setHeight(pane.getHeight());
+        if(!bounded && !positioned && pane.getWidth() > 0){
+            positioned = true;
+            originX = -pane.getWidth() / 2;
+            originY = -pane.getHeight() / 2;
+        }
+        moveTo(originX, originY);
+        redrawAll();
+    }
+
+    /**
+     * Moves the top left corner of the viewport. A finite board cannot be
+     * moved out of the viewport, and it is centered if it is smaller than the viewport.
+     * @param x X-coordinate of the corner in pixels of the board.
+     * @param y Y-coordinate of the corner in pixels of the board.
+     */
+    private void moveTo(double x, double y){
+        if(bounded){
+            x = clamp(x, width*fieldSize, canvas.getWidth());
+            y = clamp(y, height*fieldSize, canvas.getHeight());
+        }
+        if(x != originX || y != originY){
+            originX = x;
+            originY = y;
+            redrawAll();
+        }
+    }
+
+    /**
+     * Limits a coordinate of the viewport to a finite board.
+     * @param origin Coordinate of the viewport.
+     * @param length Length of the board in pixels.
+     * @param viewport Length of the viewport in pixels.
+     * @return The limited coordinate.
+     */
+    private static double clamp(double origin, double length, double viewport){
+        if(length <= viewport){
+            return Math.floor((length - viewport) / 2);
+        }
+        return Math.max(0, Math.min(length - viewport, origin));
+    }
+
+    /**
+     * Finds fields of the viewport and schedules drawing all of them.
+     * Dirty fields are forgotten, since all of them are drawn anyway.
+     */
+    private void redrawAll(){
+        firstX = getFieldX(0);
+        firstY = getFieldY(0);
+        int lastX = getFieldX(Math.max(canvas.getWidth() - 1, 0)), lastY = getFieldY(Math.max(canvas.getHeight() - 1, 0));
+        if(bounded){
+            firstX = Math.max(firstX, 0);
+            firstY = Math.max(firstY, 0);
+            lastX = Math.min(lastX, width - 1);
+            lastY = Math.min(lastY, height - 1);
+        }
+        columns = Math.max(0, lastX - firstX + 1);
+        rows = Math.max(0, lastY - firstY + 1);
+        int fields = columns*rows;
+        if(dirtyFields.length < fields){
+            dirtyFields = new int[fields];
+            dirty = new long[(fields + 63) >>> 6];
+        }
+        else{
+            for(int i = 0; i < dirtyCount; ++i){
+                dirty[dirtyFields[i] >>> 6] = 0;
+            }
+        }
+        dirtyCount = 0;
+        fullRedraw = true;
+        scheduleRedraw();
+    }
+
+    /**
+     * Adds a field to the dirty ones and schedules a redraw unless one is
+     * already scheduled. Fields outside the viewport are ignored.
+     * @param x X-coordinate.
+     * @param y Y-coordinate.
+     */
+    private void markDirty(int x, int y){
+        int column = x - firstX, row = y - firstY;
+        if(fullRedraw || column < 0 || column >= columns || row < 0 || row >= rows){
+            return;
+        }
+        int index = row*columns + column;
+        long bit = 1L << index;
+        if((dirty[index >>> 6] & bit) != 0){
+            return;
+        }
+        dirty[index >>> 6] |= bit;
+        dirtyFields[dirtyCount++] = index;
+        scheduleRedraw();
+    }
+
+    /**
+     * Schedules a redraw unless one is already scheduled.
+     */
+    private void scheduleRedraw(){
+        if(!redrawScheduled){
+            redrawScheduled = true;
+            Platform.runLater(this::redraw);
+        }
+    }
+
+    /**
+     * Draws the whole viewport or only dirty fields, and forgets them.
+     */
+    private void redraw(){
+        if(fullRedraw){
+            graphics.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+            for(int row = 0; row < rows; ++row){
+                for(int column = 0; column < columns; ++column){
+                    drawField(firstX + column, firstY + row);
+                }
+            }
+        }
+        else{
+            for(int i = 0; i < dirtyCount; ++i){
+                int index = dirtyFields[i];
+                dirty[index >>> 6] &= ~(1L << index);
+                drawField(firstX + index % columns, firstY + index / columns);
+            }
+        }
+        dirtyCount = 0;
+        fullRedraw = false;
+        redrawScheduled = false;
+    }
+
+    /**
+     * Draws a field with its sprite and its highlight.
+     * @param x X-coordinate.
+     * @param y Y-coordinate.
+     */
+    private void drawField(int x, int y){
+        double canvasX = (double)x*fieldSize - originX, canvasY = (double)y*fieldSize - originY;
+        atlas.drawSprite(graphics, getSprite(x, y), canvasX, canvasY, fieldSize);
+        if(highlighted && x == highlightX && y == highlightY){
+            graphics.setStroke(highlightColor);
+            graphics.setLineWidth(HIGHLIGHT_WIDTH);
+            graphics.strokeRect(canvasX + HIGHLIGHT_WIDTH / 2, canvasY + HIGHLIGHT_WIDTH / 2,
+                    fieldSize - HIGHLIGHT_WIDTH, fieldSize - HIGHLIGHT_WIDTH);
+        }
+    }
+
+    /**
+     * Finds the sprite of a field.
+     * @param x X-coordinate.
+     * @param y Y-coordinate.
+     * @return One of sprites: REVERSED, a value 1-8, UNMARKED, MARKED or BOMB_DETONATED.
+     */
+    private int getSprite(int x, int y){
+        int value = source.getVisibleValue(x, y);
+        switch(value){
+            case Model.FIELD_UNMARKED:
+                return UNMARKED;
+            case Model.FIELD_MARKED:
+                return MARKED;
+            case Model.FIELD_DETONATED:
+                return BOMB_DETONATED;
+            case 0:
+                return REVERSED;
+            default:
+                if(value < 1 || value > 8){
+                    throw new UnknownFieldTypeException("Tried to draw a field with value: " + value);
+                }
+                return value;
+        }
+    }
+
+    /**
+     * Sprites of fields. Values 1-8 are sprites of numbers.
+     */
+    static final int REVERSED = 0, UNMARKED = 9, MARKED = 10, BOMB = 11, BOMB_DETONATED = 12;
+    /**
+     * Sizes of a field in pixels at every zoom level.
+     */
+    private static final int[] ZOOM_SIZES = {6, 8, 10, 12, 16, 20, 24, 30, 40, 50, 64};
+    /**
+     * Zoom level of fields of 30 pixels, used if the board fits onto the screen.
+     */
+    private static final int DEFAULT_ZOOM = 7;
+    /**
+     * Smallest zoom level a large board is shrunk to when it is shown for
+     * the first time, it is scrolled beyond that.
+     */
+    private static final int MIN_INITIAL_ZOOM = 4;
+    /**
+     * Largest part of the screen taken by the viewport when it is shown for the first time.
+     */
+    private static final double SCREEN_FRACTION = 0.7;
+    /**
+     * Smallest width and height of the viewport in pixels.
+     */
+    private static final double MIN_VIEWPORT = 120;
+    /**
+     * Width of the frame highlighting a field in pixels.
+     */
+    private static final double HIGHLIGHT_WIDTH = 3;
+
+    /**
+     * Dimensions of a board, View.ENDLESS for a board without borders.
+     */
+    private int width, height;
+    /**
+     * True if the board has borders.
+     */
+    private boolean bounded;
+    /**
+     * Source of what a player sees in every field.
+     */
+    private View.FieldSource source;
+    /**
+     * Number of pixels of the screen per pixel of the scene.
+     */
+    private double scale;
+    /**
+     * Current zoom level, an index of ZOOM_SIZES.
+     */
+    private int zoom;
+    /**
+     * Size of a field on the canvas in pixels.
+     */
+    private int fieldSize;
+    /**
+     * Position of the top left corner of the viewport in pixels of the board.
+     */
+    private double originX, originY;
+    /**
+     * True once an endless board was centered on its origin.
+     */
+    private boolean positioned;
+    /**
+     * Position of the mouse and of the viewport when a drag started.
+     */
+    private double pressX, pressY, pressOriginX, pressOriginY;
+    /**
+     * Top left field of the viewport.
+     */
+    private int firstX, firstY;
+    /**
+     * Number of fields of the viewport horizontally and vertically.
+     */
+    private int columns, rows;
+    /**
+     * Bits of dirty fields of the viewport, row by row.
+     */
+    private long[] dirty;
+    /**
+     * Dirty fields of the viewport in the order they changed, the first dirtyCount are used.
+     */
+    private int[] dirtyFields;
+    /**
+     * Number of dirty fields.
+     */
+    private int dirtyCount;
+    /**
+     * True if the whole viewport has to be drawn.
+     */
+    private boolean fullRedraw;
+    /**
+     * True if a redraw is scheduled.
+     */
+    private boolean redrawScheduled;
+    /**
+     * True if a field is highlighted.
+     */
+    private boolean highlighted;
+    /**
+     * Highlighted field.
+     */
+    private int highlightX, highlightY;
+    /**
+     * Color of the highlight.
+     */
+    private Color highlightColor;
+    /**
+     * Sprites of fields, scaled to the size of a field.
+     */
+    private SpriteAtlas atlas;
+    /**
+     * Pane holding the canvas.
+     */
+    private Pane pane;
+    /**
+     * The canvas.
+     */
+    private Canvas canvas;
+    /**
+     * Graphics context of the canvas.
+     */
+    private GraphicsContext graphics;
+}
@@ -1,7 +1,6 @@
 package minesweeper.view;
 
 import javafx.scene.Node;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.HBox;
 import minesweeper.view.exceptions.CounterException;
@@ -14,30 +13,21 @@ class Counter {
      * Initializes an object given number of segments and initial value.
      * @param numberOfSegments Number of 7-segments displays to use.
      * @param initialValue Initial value to display on screen.
+     * @param atlas Atlas with images of digits.
      */
-    Counter(int numberOfSegments, int initialValue){
+    Counter(int numberOfSegments, int initialValue, SpriteAtlas atlas){
         if(numberOfSegments < 1 || initialValue < 0){
             throw new CounterException("Invalid parameters passed to a counter object constructor. NumberOfSegments = " +
             numberOfSegments + ", initialValue = " + initialValue);
         }
 
         this.numberOfSegments = numberOfSegments;
+        this.atlas = atlas;
         hBox = new HBox();
         createSegments(numberOfSegments);
         setValue(initialValue);
     }
 
-    static{
-        String path = "minesweeper/view/resources/timer/";
-        segmentsImages = new Image[11];
-        for(int i = 0; i < 10; ++i){
-            Counter.segmentsImages[i] = new Image(path + i + ".png", 30, 0,
-                    true, true);
-        }
-        Counter.segmentsImages[10] = new Image(path + "empty.png", 30, 0,
-                true, true);
-    }
-
     /**
      * Returns node containing all displays.
      * @return Node containing all displays.
@@ -53,7 +43,7 @@ class Counter {
     void setValue(int value){
         int[] digits = parseIntegerToDigitArray(value, numberOfSegments);
         for(int i = 0; i < digits.length; ++i){
-            imageViews[i].setImage(segmentsImages[digits[i]]);
+            imageViews[i].setViewport(atlas.getDigit(digits[i]));
         }
     }
 
@@ -74,7 +64,7 @@ class Counter {
         int pos = 0;
         if(length > digits.length){
             for(; pos < length - digits.length; ++pos){
-                trimmedDigits[pos] = 10;
+                trimmedDigits[pos] = SpriteAtlas.EMPTY_DIGIT;
             }
         }
         if(length < digits.length){
@@ -93,8 +83,10 @@ class Counter {
         imageViews = new ImageView[numberOfSegments];
 
         for(int i = 0; i < numberOfSegments; ++i){
-            ImageView imageView = new ImageView(segmentsImages[10]);
-            imageView.setCache(true);
+            ImageView imageView = new ImageView(atlas.getImage());
+            imageView.setViewport(atlas.getDigit(SpriteAtlas.EMPTY_DIGIT));
+            imageView.setFitWidth(atlas.getDigitWidth());
+            imageView.setPreserveRatio(true);
             imageViews[i] = imageView;
             hBox.getChildren().add(imageView);
         }
@@ -113,7 +105,7 @@ class Counter {
      */
     private ImageView[] imageViews;
     /**
-     * All possible images of displays (0-9 and empty).
+     * Atlas with images of displays (0-9 and empty).
      */
-    private static Image[] segmentsImages;
+    private SpriteAtlas atlas;
 }
@@ -0,0 +1,93 @@
+package minesweeper.view;
+
+import javafx.scene.Node;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.Dialog;
+import javafx.scene.control.Label;
+import javafx.scene.control.TextField;
+import javafx.scene.layout.GridPane;
+
+/**
+ * Dialog asking for parameters of a custom board.
+ */
+public class CustomBoardDialog extends Dialog<ButtonType> {
+    /**
+     * Initializes a dialog filled with given parameters.
+     * @param width Initial width of a board.
+     * @param height Initial height of a board.
+     * @param bombs Initial number of bombs.
+     */
+    public CustomBoardDialog(int width, int height, int bombs){
+        setTitle("Custom board");
+        widthField = new TextField(Integer.toString(width));
+        heightField = new TextField(Integer.toString(height));
+        bombsField = new TextField(Integer.toString(bombs));
+
+        GridPane grid = new GridPane();
+        grid.setHgap(10);
+        grid.setVgap(10);
+        grid.addRow(0, new Label("Width:"), widthField);
+        grid.addRow(1, new Label("Height:"), heightField);
+        grid.addRow(2, new Label("Bombs:"), bombsField);
+        grid.addRow(3, new Label("At most " + MAX_FIELDS + " fields."));
+        getDialogPane().setContent(grid);
+        getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
+
+        Node okButton = getDialogPane().lookupButton(ButtonType.OK);
+        okButton.setDisable(!isValid());
+        widthField.textProperty().addListener((observable, oldValue, newValue) -> okButton.setDisable(!isValid()));
+        heightField.textProperty().addListener((observable, oldValue, newValue) -> okButton.setDisable(!isValid()));
+        bombsField.textProperty().addListener((observable, oldValue, newValue) -> okButton.setDisable(!isValid()));
+    }
+
+    /**
+     * Returns entered width of a board.
+     * @return Width of a board.
+     */
+    public int getBoardWidth(){
+        return Integer.parseInt(widthField.getText().trim());
+    }
+
+    /**
+     * Returns entered height of a board.
+     * @return Height of a board.
+     */
+    public int getBoardHeight(){
+        return Integer.parseInt(heightField.getText().trim());
+    }
+
+    /**
+     * Returns entered number of bombs.
+     * @return Number of bombs.
+     */
+    public int getBombs(){
+        return Integer.parseInt(bombsField.getText().trim());
+    }
+
+    /**
+     * Tests if entered parameters describe a board which can be created,
+     * with at most MAX_FIELDS fields.
+     * @return True if parameters are valid.
+     */
+    private boolean isValid(){
+        try{
+            long width = getBoardWidth(), height = getBoardHeight(), bombs = getBombs();
+            return width > 0 && height > 0 && width*height <= MAX_FIELDS &&
+                    bombs >= 0 && bombs < width*height;
+        }
+        catch(NumberFormatException e){
+            return false;
+        }
+    }
+
+    /**
+     * Largest number of fields of a custom board. A board takes a byte per
+     * field, so the largest board takes 100 MB, well below the largest array.
+     */
+    static final long MAX_FIELDS = 100000000;
+
+    /**
+     * Text fields holding entered parameters.
+     */
+    private TextField widthField, heightField, bombsField;
+}
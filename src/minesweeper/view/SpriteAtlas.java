@@ -0,0 +1,359 @@
+package minesweeper.view;
+
+import javafx.geometry.Rectangle2D;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * All graphics of a game packed into a single image: sprites of fields in
+ * the first row, digits of counters in the second one and faces of the
+ * reset button in the third one. Every graphic is decoded once, when the
+ * first atlas is created, into a small master bitmap, and every atlas is
+ * resampled from masters to the exact number of pixels it is drawn with,
+ * so nothing is decoded or scaled while a game is running. Atlases are
+ * cached for every size of a field and screen scale.
+ */
+class SpriteAtlas {
+    /**
+     * Packs graphics resampled to given sizes.
+     * @param fieldPixels Size of a field in pixels of the atlas.
+     * @param scale Number of pixels of the atlas per pixel of the scene.
+     */
+    private SpriteAtlas(int fieldPixels, double scale){
+        this.fieldPixels = fieldPixels;
+        this.scale = scale;
+        digitWidth = (int)Math.round(DIGIT_WIDTH*scale);
+        digitHeight = (int)Math.round(digitWidth*masters.digitHeight / (double)MASTER_DIGIT_WIDTH);
+        facePixels = (int)Math.round(FACE_SIZE*scale);
+        int width = Math.max(SPRITES*fieldPixels, Math.max(DIGITS*digitWidth, FACES*facePixels));
+        WritableImage atlas = new WritableImage(width, fieldPixels + digitHeight + facePixels);
+        for(int sprite = 0; sprite < SPRITES; ++sprite){
+            put(atlas, masters.sprites[sprite], MASTER_SIZE, MASTER_SIZE, sprite*fieldPixels, 0, fieldPixels, fieldPixels);
+        }
+        for(int digit = 0; digit < DIGITS; ++digit){
+            put(atlas, masters.digits[digit], MASTER_DIGIT_WIDTH, masters.digitHeight,
+                    digit*digitWidth, fieldPixels, digitWidth, digitHeight);
+        }
+        for(int face = 0; face < FACES; ++face){
+            put(atlas, masters.faces[face], MASTER_SIZE, MASTER_SIZE,
+                    face*facePixels, fieldPixels + digitHeight, facePixels, facePixels);
+        }
+        image = atlas;
+    }
+
+    /**
+     * Returns the atlas for a size of a field, creating it on the first call.
+     * The first call decodes all graphics.
+     * @param fieldSize Size of a field in pixels of the scene.
+     * @param scale Number of pixels of the screen per pixel of the scene.
+     * @return The atlas.
+     */
+    static SpriteAtlas get(double fieldSize, double scale){
+        if(masters == null){
+            long start = System.nanoTime();
+            masters = new Masters();
+            decodeNanos = System.nanoTime() - start;
+        }
+        int fieldPixels = Math.max(1, (int)Math.round(fieldSize*scale));
+        long key = (long)fieldPixels << 32 | Math.round(scale*SCALE_STEPS);
+        SpriteAtlas atlas = atlases.get(key);
+        if(atlas == null){
+            atlas = new SpriteAtlas(fieldPixels, scale);
+            atlases.put(key, atlas);
+        }
+        return atlas;
+    }
+
+    /**
+     * Returns time it took to decode all graphics.
+     * @return Duration in nanoseconds or 0 if nothing is decoded yet.
+     */
+    static long getDecodeNanos(){
+        return decodeNanos;
+    }
+
+    /**
+     * Returns the image of the game used as the icon of a window.
+     * @return The icon, decoded with other graphics.
+     */
+    static Image getIcon(){
+        get(FACE_SIZE, 1);
+        return masters.icon;
+    }
+
+    /**
+     * Returns the image holding all graphics.
+     * @return The atlas image.
+     */
+    Image getImage(){
+        return image;
+    }
+
+    /**
+     * Draws a sprite of a field.
+     * @param graphics Graphics context to draw with.
+     * @param sprite One of BoardCanvas sprites.
+     * @param x X-coordinate of the field on the canvas.
+     * @param y Y-coordinate of the field on the canvas.
+     * @param size Size of the field on the canvas.
+     */
+    void drawSprite(GraphicsContext graphics, int sprite, double x, double y, double size){
+        graphics.drawImage(image, sprite*fieldPixels, 0, fieldPixels, fieldPixels, x, y, size, size);
+    }
+
+    /**
+     * Returns the region of a digit of a counter.
+     * @param digit Digit 0-9 or EMPTY_DIGIT.
+     * @return Region of the atlas.
+     */
+    Rectangle2D getDigit(int digit){
+        return new Rectangle2D(digit*digitWidth, fieldPixels, digitWidth, digitHeight);
+    }
+
+    /**
+     * Returns the region of a face of the reset button.
+     * @param face FACE_RUNNING, FACE_VICTORY or FACE_DETONATED.
+     * @return Region of the atlas.
+     */
+    Rectangle2D getFace(int face){
+        return new Rectangle2D(face*facePixels, fieldPixels + digitHeight, facePixels, facePixels);
+    }
+
+    /**
+     * Returns width of a digit of a counter in pixels of the scene.
+     * @return Width of a digit.
+     */
+    double getDigitWidth(){
+        return digitWidth / scale;
+    }
+
+    /**
+     * Returns size of a face of the reset button in pixels of the scene.
+     * @return Size of a face.
+     */
+    double getFaceSize(){
+        return facePixels / scale;
+    }
+
+    /**
+     * Writes a master bitmap resampled to a rectangle of the atlas.
+     * @param atlas The atlas.
+     * @param pixels ARGB pixels of the master.
+     * @param width Width of the master.
+     * @param height Height of the master.
+     * @param x Left edge of the rectangle.
+     * @param y Top edge of the rectangle.
+     * @param targetWidth Width of the rectangle.
+     * @param targetHeight Height of the rectangle.
+     */
+    private static void put(WritableImage atlas, int[] pixels, int width, int height,
+                            int x, int y, int targetWidth, int targetHeight){
+        int[] resampled = resample(pixels, width, height, targetWidth, targetHeight);
+        atlas.getPixelWriter().setPixels(x, y, targetWidth, targetHeight, PixelFormat.getIntArgbInstance(),
+                resampled, 0, targetWidth);
+    }
+
+    /**
+     * Resamples ARGB pixels with a box filter: every target pixel is the
+     * average of source pixels it covers, weighted by the covered area.
+     * Colors are averaged premultiplied by alpha, so transparent pixels
+     * do not darken edges.
+     * @param pixels Source pixels, row by row.
+     * @param width Width of the source.
+     * @param height Height of the source.
+     * @param targetWidth Width of the result.
+     * @param targetHeight Height of the result.
+     * @return Resampled pixels, row by row.
+     */
+    static int[] resample(int[] pixels, int width, int height, int targetWidth, int targetHeight){
+        int[] result = new int[targetWidth*targetHeight];
+        double stepX = (double)width / targetWidth, stepY = (double)height / targetHeight;
+        for(int ty = 0; ty < targetHeight; ++ty){
+            double top = ty*stepY, bottom = top + stepY;
+            for(int tx = 0; tx < targetWidth; ++tx){
+                double left = tx*stepX, right = left + stepX;
+                double a = 0, r = 0, g = 0, b = 0;
+                for(int sy = (int)top; sy < Math.min(Math.ceil(bottom), height); ++sy){
+                    double weightY = Math.min(bottom, sy + 1) - Math.max(top, sy);
+                    for(int sx = (int)left; sx < Math.min(Math.ceil(right), width); ++sx){
+                        int pixel = pixels[sy*width + sx];
+                        double weight = weightY*(Math.min(right, sx + 1) - Math.max(left, sx));
+                        double alpha = (pixel >>> 24)*weight;
+                        a += alpha;
+                        r += ((pixel >>> 16) & 0xFF)*alpha;
+                        g += ((pixel >>> 8) & 0xFF)*alpha;
+                        b += (pixel & 0xFF)*alpha;
+                    }
+                }
+                int alpha = (int)Math.round(a / (stepX*stepY));
+                result[ty*targetWidth + tx] = a == 0 ? 0 : Math.min(alpha, 0xFF) << 24 |
+                        (int)Math.round(r / a) << 16 | (int)Math.round(g / a) << 8 | (int)Math.round(b / a);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Graphics decoded once, at sizes large enough to resample every atlas from.
+     */
+    private static class Masters {
+        /**
+         * Decodes all graphics.
+         */
+        Masters(){
+            String board = "/minesweeper/view/resources/game_board/";
+            String timer = "/minesweeper/view/resources/timer/";
+            sprites = new int[SPRITES][];
+            for(int value = 1; value <= 8; ++value){
+                sprites[value] = decode(board + value + ".png", MASTER_SIZE, MASTER_SIZE);
+            }
+            sprites[BoardCanvas.REVERSED] = decode(board + "reversed.png", MASTER_SIZE, MASTER_SIZE);
+            sprites[BoardCanvas.UNMARKED] = decode(board + "unmarked.png", MASTER_SIZE, MASTER_SIZE);
+            sprites[BoardCanvas.MARKED] = decode(board + "marked.png", MASTER_SIZE, MASTER_SIZE);
+            sprites[BoardCanvas.BOMB] = decode(board + "bomb.jpg", MASTER_SIZE, MASTER_SIZE);
+            sprites[BoardCanvas.BOMB_DETONATED] = decode(board + "bomb_detonated.jpg", MASTER_SIZE, MASTER_SIZE);
+
+            Image empty = new Image(timer + "empty.png", MASTER_DIGIT_WIDTH, 0, true, true);
+            digitHeight = (int)empty.getHeight();
+            digits = new int[DIGITS][];
+            for(int digit = 0; digit < 10; ++digit){
+                digits[digit] = decode(timer + digit + ".png", MASTER_DIGIT_WIDTH, digitHeight);
+            }
+            digits[EMPTY_DIGIT] = pixels(empty);
+
+            // The icon and the running face reuse the bomb master instead of decoding the full-size JPEG again.
+            WritableImage bomb = new WritableImage(MASTER_SIZE, MASTER_SIZE);
+            bomb.getPixelWriter().setPixels(0, 0, MASTER_SIZE, MASTER_SIZE, PixelFormat.getIntArgbInstance(),
+                    sprites[BoardCanvas.BOMB], 0, MASTER_SIZE);
+            icon = bomb;
+            faces = new int[FACES][];
+            faces[FACE_RUNNING] = sprites[BoardCanvas.BOMB];
+            faces[FACE_VICTORY] = decode(board + "bomb_green.jpg", MASTER_SIZE, MASTER_SIZE);
+            faces[FACE_DETONATED] = sprites[BoardCanvas.BOMB_DETONATED];
+        }
+
+        /**
+         * Decodes an image scaled to a size.
+         * @param path Path of the image.
+         * @param width Width of the result.
+         * @param height Height of the result.
+         * @return ARGB pixels, row by row.
+         */
+        private static int[] decode(String path, int width, int height){
+            return pixels(new Image(path, width, height, false, true));
+        }
+
+        /**
+         * Reads pixels of a decoded image.
+         * @param image The image.
+         * @return ARGB pixels, row by row.
+         */
+        private static int[] pixels(Image image){
+            int width = (int)image.getWidth(), height = (int)image.getHeight();
+            int[] pixels = new int[width*height];
+            image.getPixelReader().getPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+            return pixels;
+        }
+
+        /**
+         * Sprites of fields, indexed like BoardCanvas sprites.
+         */
+        private int[][] sprites;
+        /**
+         * Digits of counters, 0-9 and EMPTY_DIGIT.
+         */
+        private int[][] digits;
+        /**
+         * Height of digits.
+         */
+        private int digitHeight;
+        /**
+         * Faces of the reset button.
+         */
+        private int[][] faces;
+        /**
+         * Icon of a window, MASTER_SIZE pixels wide.
+         */
+        private Image icon;
+    }
+
+    /**
+     * Index of an empty digit of a counter.
+     */
+    static final int EMPTY_DIGIT = 10;
+    /**
+     * Faces of the reset button.
+     */
+    static final int FACE_RUNNING = 0, FACE_VICTORY = 1, FACE_DETONATED = 2;
+    /**
+     * Number of sprites of fields.
+     */
+    private static final int SPRITES = 13;
+    /**
+     * Number of digits of counters, including the empty one.
+     */
+    private static final int DIGITS = 11;
+    /**
+     * Number of faces.
+     */
+    private static final int FACES = 3;
+    /**
+     * Width of a digit of a counter in pixels of the scene.
+     */
+    private static final int DIGIT_WIDTH = 30;
+    /**
+     * Size of a face of the reset button in pixels of the scene.
+     */
+    private static final int FACE_SIZE = 50;
+    /**
+     * Size of master bitmaps of sprites and faces, enough for fields of 64
+     * pixels on a screen of scale 2.
+     */
+    private static final int MASTER_SIZE = 128;
+    /**
+     * Width of master bitmaps of digits.
+     */
+    private static final int MASTER_DIGIT_WIDTH = 64;
+    /**
+     * Screen scales are told apart with this precision.
+     */
+    private static final int SCALE_STEPS = 100;
+    /**
+     * Decoded graphics or null before the first atlas.
+     */
+    private static Masters masters;
+    /**
+     * Time it took to decode graphics in nanoseconds.
+     */
+    private static long decodeNanos;
+    /**
+     * Created atlases by size of a field in pixels and screen scale.
+     */
+    private static Map<Long, SpriteAtlas> atlases = new HashMap<>();
+
+    /**
+     * Size of a field in pixels of the atlas.
+     */
+    private int fieldPixels;
+    /**
+     * Number of pixels of the atlas per pixel of the scene.
+     */
+    private double scale;
+    /**
+     * Size of a digit of a counter in pixels of the atlas.
+     */
+    private int digitWidth, digitHeight;
+    /**
+     * Size of a face in pixels of the atlas.
+     */
+    private int facePixels;
+    /**
+     * The atlas image.
+     */
+    private Image image;
+}
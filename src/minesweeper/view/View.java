@@ -4,21 +4,25 @@ import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.fxml.FXMLLoader;
-import javafx.geometry.Pos;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.CheckMenuItem;
 import javafx.scene.control.MenuBar;
 import javafx.scene.control.MenuItem;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.*;
+import javafx.scene.paint.Color;
+import javafx.stage.Screen;
 import javafx.stage.Stage;
 import minesweeper.logger.Logger;
+import minesweeper.model.GameState;
+import minesweeper.model.HistoryChange;
+import minesweeper.model.MarkChange;
+import minesweeper.model.ReverseChange;
 
-import java.util.ArrayList;
-import java.util.Observable;
-import java.util.Observer;
+import java.util.Locale;
 
 /**
  * View class of a game.
@@ -27,28 +31,28 @@ public class View {
     /**
      * Initializes an object.
      * @param stage Current stage.
-     * @param height Height of a board.
-     * @param width Width of a board.
+     * @param height Height of a board or ENDLESS.
+     * @param width Width of a board or ENDLESS.
      * @param bombs Bombs in a board.
+     * @param fields Source of what a player sees in every field.
      * @throws Exception
      */
-    public View(Stage stage, int height, int width, int bombs) throws Exception{
+    public View(Stage stage, int height, int width, int bombs, FieldSource fields) throws Exception{
         this.stage = stage;
-        gridObservable = new GridObservable();
         logger = new Logger("View");
 
         setScene();
+        setupGameGrid(height, width, fields);
         setupTopBar(bombs);
-        setupGameGrid(height, width);
         setupStage();
     }
 
     /**
-     * Adds observer to fields.
-     * @param observer Observer to add.
+     * Sets the listener of clicks on fields, replacing the previous one.
+     * @param listener Listener to set.
      */
-    public void addButtonObserver(Observer observer){
-        gridObservable.addObserver(observer);
+    public void setFieldClickListener(FieldClickListener listener){
+        fieldClickListener = listener;
     }
 
     /**
@@ -60,55 +64,58 @@ public class View {
     }
 
     /**
-     * Mark a field.
-     * @param x X-coordinate.
-     * @param y Y-coordinate.
-     */
-    public void mark(int x, int y){
-        getField(x, y).set(Field.Type.MARKED);
-    }
-
-    /**
-     * "Unmark" a field.
-     * @param x X-coordinate.
-     * @param y Y-coordinate.
-     */
-    public void unmark(int x, int y){
-        getField(x, y).set(Field.Type.UNMARKED);
-    }
-
-    /**
-     * Shows a bomb in this field.
-     * @param x X-coordinate.
-     * @param y Y-coordinate.
+     * Shows all fields reversed by a single action. Fields are only
+     * collected as dirty, so the whole change is drawn in one pass.
+     * @param reverseChange Result of a reverse or a chord.
      */
-    public void showBomb(int x, int y){
-        getField(x, y).set(Field.Type.BOMB);
+    public void apply(ReverseChange reverseChange){
+        if(reverseChange.gameStateChanged() && reverseChange.getGameState() == GameState.BOMB_DETONATED){
+            board.update(reverseChange.getDetonatedX(), reverseChange.getDetonatedY());
+            showDetonated();
+            return;
+        }
+        reverseChange.forEach((x, y, value) -> board.update(x, y));
+        if(reverseChange.gameStateChanged() && reverseChange.getGameState() == GameState.SOLVED){
+            victory();
+        }
     }
 
     /**
-     * Shows a detonated bomb in this field.
-     * @param x X-coordinate.
-     * @param y Y-coordinate.
+     * Shows all fields changed by an undo or a redo, together with the bomb counter
+     * and the face matching the restored game state. Like a reverse, the whole
+     * change is drawn in one pass.
+     * @param historyChange Result of an undo or a redo.
      */
-    public void showBombDetonated(int x, int y){
-        getField(x, y).set(Field.Type.BOMB_DETONATED);
-        resetButton.setImage(new Image("/minesweeper/view/resources/game_board/bomb_detonated.jpg",
-                50, 0, true, true));
+    public void apply(HistoryChange historyChange){
+        if(!historyChange.isStateChanged()){
+            return;
+        }
+        historyChange.forEach((x, y, value) -> board.update(x, y));
+        setCounter(historyChange.getBombCounter());
+        switch(historyChange.getGameState()){
+            case BOMB_DETONATED:
+                showDetonated();
+                break;
+            case SOLVED:
+                victory();
+                break;
+            default:
+                showRunning();
+        }
     }
 
     /**
-     * Sets a number value in a field.
+     * Shows the result of marking a field, together with the bomb counter.
      * @param x X-coordinate.
      * @param y Y-coordinate.
-     * @param value Value to be set.
+     * @param markChange Result of the marking.
      */
-    public void setFieldValue(int x, int y, int value){
-        if(value == 0){
-            getField(x, y).set(Field.Type.REVERSED);
+    public void apply(int x, int y, MarkChange markChange){
+        if(!markChange.isStateChanged()){
             return;
         }
-        getField(x, y).set(value);
+        board.update(x, y);
+        setCounter(markChange.getBombCounter());
     }
 
     /**
@@ -131,8 +138,16 @@ public class View {
      * Changes middle bomb image to indicate victory.
      */
     public void victory(){
-        resetButton.setImage(new Image("/minesweeper/view/resources/game_board/bomb_green.jpg",
-                50, 0, true, true));
+        resetButton.setViewport(atlas.getFace(SpriteAtlas.FACE_VICTORY));
+    }
+
+    /**
+     * Shows efficiency of a player who solved a board in the title of the window.
+     * @param threeBV 3BV of the board.
+     * @param threeBVPerSecond 3BV solved per second.
+     */
+    public void showEfficiency(long threeBV, double threeBVPerSecond){
+        stage.setTitle(String.format(Locale.ROOT, "Minesweeper - 3BV %d, %.2f 3BV/s", threeBV, threeBVPerSecond));
     }
 
     /**
@@ -165,15 +180,152 @@ public class View {
         menuItem.setOnAction(handler);
     }
 
+    /**
+     * Sets handler to custom difficulty menu item.
+     * @param handler Handler to set.
+     */
+    public void setCustomItemHandler(EventHandler<ActionEvent> handler){
+        MenuBar menuBar = (MenuBar) scene.lookup("#menuBar");
+        MenuItem menuItem = menuBar.getMenus().get(0).getItems().get(3);
+        menuItem.setOnAction(handler);
+    }
+
+    /**
+     * Sets handler to endless game menu item.
+     * @param handler Handler to set.
+     */
+    public void setEndlessItemHandler(EventHandler<ActionEvent> handler){
+        MenuBar menuBar = (MenuBar) scene.lookup("#menuBar");
+        MenuItem menuItem = menuBar.getMenus().get(0).getItems().get(4);
+        menuItem.setOnAction(handler);
+    }
+
+    /**
+     * Sets handler to no guessing menu item.
+     * @param handler Handler to set.
+     */
+    public void setNoGuessItemHandler(EventHandler<ActionEvent> handler){
+        MenuBar menuBar = (MenuBar) scene.lookup("#menuBar");
+        MenuItem menuItem = menuBar.getMenus().get(0).getItems().get(6);
+        menuItem.setOnAction(handler);
+    }
+
+    /**
+     * Checks the no guessing menu item, and disables it if the mode is not offered for the board.
+     * @param noGuess True if boards solvable without guessing are generated.
+     * @param offered True if the current board can be generated solvable without guessing.
+     */
+    public void setNoGuessMode(boolean noGuess, boolean offered){
+        MenuBar menuBar = (MenuBar) scene.lookup("#menuBar");
+        CheckMenuItem menuItem = (CheckMenuItem) menuBar.getMenus().get(0).getItems().get(6);
+        menuItem.setSelected(noGuess);
+        menuItem.setDisable(!offered);
+    }
+
+    /**
+     * Sets handler to practice mode menu item.
+     * @param handler Handler to set.
+     */
+    public void setPracticeItemHandler(EventHandler<ActionEvent> handler){
+        MenuBar menuBar = (MenuBar) scene.lookup("#menuBar");
+        MenuItem menuItem = menuBar.getMenus().get(1).getItems().get(0);
+        menuItem.setOnAction(handler);
+    }
+
+    /**
+     * Sets handler to undo menu item.
+     * @param handler Handler to set.
+     */
+    public void setUndoItemHandler(EventHandler<ActionEvent> handler){
+        MenuBar menuBar = (MenuBar) scene.lookup("#menuBar");
+        MenuItem menuItem = menuBar.getMenus().get(1).getItems().get(1);
+        menuItem.setOnAction(handler);
+    }
+
+    /**
+     * Sets handler to redo menu item.
+     * @param handler Handler to set.
+     */
+    public void setRedoItemHandler(EventHandler<ActionEvent> handler){
+        MenuBar menuBar = (MenuBar) scene.lookup("#menuBar");
+        MenuItem menuItem = menuBar.getMenus().get(1).getItems().get(2);
+        menuItem.setOnAction(handler);
+    }
+
+    /**
+     * Checks the practice mode menu item and enables undo and redo menu items.
+     * @param practiceMode True if practice mode is on.
+     */
+    public void setPracticeMode(boolean practiceMode){
+        MenuBar menuBar = (MenuBar) scene.lookup("#menuBar");
+        ((CheckMenuItem) menuBar.getMenus().get(1).getItems().get(0)).setSelected(practiceMode);
+        menuBar.getMenus().get(1).getItems().get(1).setDisable(!practiceMode);
+        menuBar.getMenus().get(1).getItems().get(2).setDisable(!practiceMode);
+    }
+
+    /**
+     * Disables controls which need a finite board: practice mode, no guessing and hints.
+     */
+    public void setEndlessMode(){
+        MenuBar menuBar = (MenuBar) scene.lookup("#menuBar");
+        for(MenuItem menuItem : menuBar.getMenus().get(1).getItems()){
+            menuItem.setDisable(true);
+        }
+        menuBar.getMenus().get(0).getItems().get(6).setDisable(true);
+        scene.lookup("#hintButton").setDisable(true);
+    }
+
+    /**
+     * Sets handler to hint button.
+     * @param handler Handler to set.
+     */
+    public void setHintButtonHandler(EventHandler<ActionEvent> handler){
+        Button hintButton = (Button) scene.lookup("#hintButton");
+        hintButton.setOnAction(handler);
+    }
+
+    /**
+     * Highlights a field suggested by a hint. Only one field is highlighted at once.
+     * @param x X-coordinate.
+     * @param y Y-coordinate.
+     * @param safe True if the field is proven safe, false if it is only the least risky one.
+     */
+    public void showHint(int x, int y, boolean safe){
+        board.highlight(x, y, safe ? Color.LIMEGREEN : Color.ORANGE);
+    }
+
+    /**
+     * Removes the highlight of a hint.
+     */
+    public void clearHint(){
+        board.clearHighlight();
+    }
+
+    /**
+     * Changes middle bomb image to indicate a detonated bomb.
+     */
+    private void showDetonated(){
+        resetButton.setViewport(atlas.getFace(SpriteAtlas.FACE_DETONATED));
+    }
+
+    /**
+     * Changes middle bomb image back to indicate a running game.
+     */
+    public void showRunning(){
+        resetButton.setViewport(atlas.getFace(SpriteAtlas.FACE_RUNNING));
+    }
+
     /**
      * Setups top bar of a view.
      * @param bombs Total bombs in a game.
      */
     private void setupTopBar(int bombs) {
-        timerCounter = new Counter(3, 0);
-        bombCounter = new Counter(3, bombs);
-        resetButton = new ImageView(new Image("/minesweeper/view/resources/game_board/bomb.jpg",
-                50, 0, true, true));
+        timerCounter = new Counter(3, 0, atlas);
+        bombCounter = new Counter(3, bombs, atlas);
+        resetButton = new ImageView(atlas.getImage());
+        resetButton.setViewport(atlas.getFace(SpriteAtlas.FACE_RUNNING));
+        resetButton.setFitWidth(atlas.getFaceSize());
+        resetButton.setPreserveRatio(true);
 
         BorderPane borderPane = (BorderPane) scene.lookup("#borderPane");
         borderPane.setRight(timerCounter.getNode());
@@ -182,24 +334,28 @@ public class View {
     }
 
     /**
-     * Returns a field given its coordinates.
-     * @param x X-coordinate.
-     * @param y Y-coordinate.
-     * @return A field of given coordinates.
+     * Setups stage properties.
      */
-    private Field getField(int x, int y){
-        return fields.get(y).get(x);
+    private void setupStage() {
+        stage.show();
+        // The window can shrink until the board reaches its smallest viewport.
+        Parent root = scene.getRoot();
+        stage.setMinWidth(stage.getWidth() - scene.getWidth() + root.minWidth(-1));
+        stage.setMinHeight(stage.getHeight() - scene.getHeight() + root.minHeight(-1));
+        if(stage.getIcons().isEmpty()){
+            stage.getIcons().add(SpriteAtlas.getIcon());
+        }
+        stage.setResizable(true);
     }
 
     /**
-     * Setups stage properties.
+     * Estimates number of pixels of the screen per pixel of the scene from
+     * the resolution of the primary screen, so sprites are scaled to the
+     * pixels they are drawn on.
+     * @return Scale of the screen, at least 1.
      */
-    private void setupStage() {
-        stage.show();
-        stage.setMinWidth(scene.getWidth());
-        stage.setMinHeight(scene.getHeight());
-        stage.getIcons().add(new Image("/minesweeper/view/resources/game_board/bomb.jpg"));
-        stage.setResizable(false);
+    private static double getScreenScale(){
+        return Math.max(1, Screen.getPrimary().getDpi() / BASE_DPI);
     }
 
     /**
@@ -214,62 +370,36 @@ public class View {
     }
 
     /**
-     * Translate coordinates to string - (x, y) format.
-     * @param x X-coordinate.
-     * @param y Y-coordinate.
-     * @return String representation.
+     * Setups game board drawn onto a canvas, with a single click handler for all fields.
+     * The board takes all space of the window left by other controls.
+     * @param height Height of a board or ENDLESS.
+     * @param width Width of a board or ENDLESS.
+     * @param fields Source of what a player sees in every field.
      */
-    private String translateCoordinatesToId(int x, int y){
-        return Integer.toString(x) + ", " + Integer.toString(y);
+    private void setupGameGrid(int height, int width, FieldSource fields){
+        long start = System.nanoTime();
+        board = new BoardCanvas(width, height, getScreenScale(), fields);
+        atlas = board.getAtlas();
+        Pane boardPane = board.getNode();
+        boardPane.setOnMouseClicked(new ButtonPressedHandler());
+
+        VBox mainVBox = (VBox)scene.lookup("#mainVBox");
+        VBox.setVgrow(boardPane, Priority.ALWAYS);
+        mainVBox.getChildren().add(boardPane);
+        logger.log("board of " + (width == ENDLESS ? "endless" : width + "x" + height) + " fields built in " +
+                (System.nanoTime() - start) / 1000000 + " ms, graphics decoded in " +
+                SpriteAtlas.getDecodeNanos() / 1000000 + " ms");
     }
 
     /**
-     * Creates game board fields.
-     * @param height Height of a board.
-     * @param width Width of a board.
-     * @return 2D array of created fields.
+     * Width and height of a board without borders.
      */
-    private ArrayList<ArrayList<Field>> createFields(int height, int width){
-        ArrayList<ArrayList<Field>> fields = new ArrayList<>();
-
-        int size = 30;
-        for(int i = 0; i < height; ++i){
-            ArrayList<Field> row = new ArrayList<>();
-            fields.add(row);
-            for(int j = 0; j < width; ++j){
-                Field field = new Field();
-                field.setFitWidth(size);
-                field.setFitHeight(size);
-                field.setId(translateCoordinatesToId(j, i));
-                field.setOnMouseClicked(new ButtonPressedHandler());
-                row.add(field);
-            }
-        }
-
-        return fields;
-    }
+    public static final int ENDLESS = 0;
 
     /**
-     * Setups game grid.
-     * @param height Height of a board.
-     * @param width Width of a board.
+     * Resolution of a screen of scale 1.
      */
-    private void setupGameGrid(int height, int width){
-        GridPane grid = new GridPane();
-        fields = createFields(height, width);
-
-        for(int i = 0; i < fields.size(); ++i){
-            ArrayList<Field> row = fields.get(i);
-            for(int j = 0; j < row.size(); ++j){
-                Field field = row.get(j);
-                grid.add(field, j, i);
-            }
-        }
-
-        VBox mainVBox = (VBox)scene.lookup("#mainVBox");
-        grid.setAlignment(Pos.CENTER);
-        mainVBox.getChildren().add(grid);
-    }
+    private static final double BASE_DPI = 96;
 
     /**
      * A current stage.
@@ -280,17 +410,21 @@ public class View {
      */
     private Scene scene;
     /**
-     * A grid observable.
+     * Listener of clicks on fields or null.
      */
-    private Observable gridObservable;
+    private FieldClickListener fieldClickListener;
     /**
      * A logger object.
      */
     private Logger logger;
     /**
-     * 2D array of fields.
+     * Game board drawn onto a canvas.
+     */
+    private BoardCanvas board;
+    /**
+     * Atlas the counters and the reset button are drawn from.
      */
-    private ArrayList<ArrayList<Field>> fields;
+    private SpriteAtlas atlas;
     /**
      * TimerCounter and BombCounter current values.
      */
@@ -301,23 +435,71 @@ public class View {
     private ImageView resetButton;
 
     /**
-     * Field pressed handler.
+     * Field pressed handler. The only mouse handler of the board, it finds
+     * the clicked field from the position of the click.
      */
     class ButtonPressedHandler implements EventHandler<MouseEvent> {
         @Override
         public void handle(MouseEvent event) {
+            // A click ending a drag of the board only moves the viewport.
+            if(fieldClickListener == null || !event.isStillSincePress() ||
+                    !board.contains(event.getX(), event.getY())){
+                return;
+            }
             logger.log("button clicked.");
-            gridObservable.notifyObservers(event);
+            fieldClickListener.fieldClicked(board.getFieldX(event.getX()), board.getFieldY(event.getY()),
+                    getButton(event));
+        }
+
+        /**
+         * Finds which button a click was made with.
+         * @param event Mouse event of the board.
+         * @return One of FieldClickListener buttons.
+         */
+        private int getButton(MouseEvent event){
+            switch(event.getButton()){
+                case PRIMARY:
+                    return event.isSecondaryButtonDown() ? FieldClickListener.BOTH : FieldClickListener.PRIMARY;
+                case SECONDARY:
+                    return event.isPrimaryButtonDown() ? FieldClickListener.BOTH : FieldClickListener.SECONDARY;
+                case MIDDLE:
+                    return FieldClickListener.MIDDLE;
+                default:
+                    return FieldClickListener.NONE;
+            }
         }
     }
 
     /**
-     * Grid observable.
+     * Source of what a player sees in every field of a board, asked for
+     * the fields the view draws.
      */
-    class GridObservable extends Observable{
-        public void notifyObservers(Object args){
-            setChanged();
-            super.notifyObservers(args);
-        }
+    public interface FieldSource {
+        /**
+         * Returns what a player sees in a field.
+         * @param x X-coordinate.
+         * @param y Y-coordinate.
+         * @return Value of a reversed field (0-8), Model.FIELD_UNMARKED, Model.FIELD_MARKED or Model.FIELD_DETONATED.
+         */
+        int getVisibleValue(int x, int y);
+    }
+
+    /**
+     * Listener of clicks on fields of a board.
+     */
+    public interface FieldClickListener {
+        /**
+         * Called when a field is clicked.
+         * @param x X-coordinate of the field.
+         * @param y Y-coordinate of the field.
+         * @param button PRIMARY, SECONDARY, MIDDLE, BOTH for one of the two main buttons
+         *               clicked while the other is held, or NONE for other buttons.
+         */
+        void fieldClicked(int x, int y, int button);
+
+        /**
+         * Buttons a field can be clicked with.
+         */
+        int NONE = 0, PRIMARY = 1, SECONDARY = 2, MIDDLE = 3, BOTH = 4;
     }
 }